@@ -0,0 +1,154 @@
+package com.honorsproj.mariogame;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Point;
+import android.os.Debug;
+import android.util.Log;
+import android.util.TypedValue;
+
+// Decodes drawables straight to the size they will be drawn at. The image
+// bounds are read first, then the image is decoded with a sample size and
+// density that land on the target size, so there is never a full-size copy
+// waiting around to be garbage collected. Logs time and memory per asset.
+// Can be shared by several decoding threads.
+class AssetLoader
+{
+    final static String TAG = "AssetLoader";
+
+    final Resources res;
+    final int deviceDensity;
+
+    // Reused for every decode on the same thread
+    final ThreadLocal<BitmapFactory.Options> decodeOptions = new ThreadLocal<BitmapFactory.Options>()
+    {
+        @Override
+        protected BitmapFactory.Options initialValue()
+        {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inTempStorage = new byte[16 * 1024];
+            return options;
+        }
+    };
+
+    // Stats
+    long totalNanos;    // Time spent decoding
+    long peakHeap;      // Most Java heap in use after any decode
+    long peakNative;    // Most native heap in use after any decode (bitmap pixels on newer devices)
+
+    AssetLoader(Resources res)
+    {
+        this.res = res;
+        deviceDensity = res.getDisplayMetrics().densityDpi;
+    }
+
+    // Finds the size an image would normally be decoded at for this screen
+    // without decoding it
+    Point naturalSize(int resId)
+    {
+        BitmapFactory.Options options = decodeOptions.get();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        options.inSampleSize = 1;
+        BitmapFactory.decodeResource(res, resId, options);
+
+        return naturalSize(resId, options.outWidth, options.outHeight);
+    }
+
+    Point naturalSize(int resId, int srcW, int srcH)
+    {
+        TypedValue value = new TypedValue();
+        res.getValue(resId, value, true);
+
+        if (value.density == TypedValue.DENSITY_NONE)
+            return new Point(srcW, srcH);
+
+        int density = value.density == TypedValue.DENSITY_DEFAULT
+                ? 160 : value.density;
+
+        return new Point((int)(srcW * deviceDensity / (float)density + 0.5f),
+                (int)(srcH * deviceDensity / (float)density + 0.5f));
+    }
+
+    // Decodes an image at its normal size for this screen
+    Bitmap load(int resId)
+    {
+        return load(resId, -1, -1);
+    }
+
+    // Decodes an image at w by h pixels (-1 for its normal size)
+    Bitmap load(int resId, int w, int h)
+    {
+        long start = System.nanoTime();
+        BitmapFactory.Options options = decodeOptions.get();
+
+        // Read just the size
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        options.inSampleSize = 1;
+        BitmapFactory.decodeResource(res, resId, options);
+        int srcW = options.outWidth;
+        int srcH = options.outHeight;
+
+        if (w < 0)
+        {
+            // Same size BitmapFactory would normally give for this screen
+            Point size = naturalSize(resId, srcW, srcH);
+            w = size.x;
+            h = size.y;
+        }
+
+        // Skip whole powers of two of pixels while staying at or above the target
+        int sample = 1;
+        while (srcW / (sample * 2) >= w && srcH / (sample * 2) >= h)
+        {
+            sample *= 2;
+        }
+
+        // Scale the rest of the way while decoding
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sample;
+        options.inScaled = srcW / sample != w;
+        options.inDensity = srcW / sample;
+        options.inTargetDensity = w;
+        Bitmap bitmap = BitmapFactory.decodeResource(res, resId, options);
+
+        // Scaling while decoding keeps the aspect ratio, so fix the height if needed
+        if (bitmap.getWidth() != w || bitmap.getHeight() != h)
+        {
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap, w, h, false);
+            if (scaled != bitmap)
+                bitmap.recycle();
+            bitmap = scaled;
+        }
+
+        bitmap.setDensity(deviceDensity);
+
+        long nanos = System.nanoTime() - start;
+
+        Runtime runtime = Runtime.getRuntime();
+        long heap = runtime.totalMemory() - runtime.freeMemory();
+        long nativeHeap = Debug.getNativeHeapAllocatedSize();
+
+        synchronized (this)
+        {
+            totalNanos += nanos;
+            peakHeap = Math.max(peakHeap, heap);
+            peakNative = Math.max(peakNative, nativeHeap);
+        }
+
+        Log.d(TAG, res.getResourceEntryName(resId) + ": " + srcW + "x" + srcH
+                + " -> " + w + "x" + h + " (sample " + sample + ") in "
+                + nanos / 1000 + " us, heap " + heap / 1024 + " KB, native "
+                + nativeHeap / 1024 + " KB");
+
+        return bitmap;
+    }
+
+    synchronized void logSummary()
+    {
+        Log.i(TAG, "Decoded assets in " + totalNanos / 1000000 + " ms (all threads), peak heap "
+                + peakHeap / 1024 + " KB, peak native " + peakNative / 1024 + " KB");
+    }
+}
@@ -0,0 +1,188 @@
+package com.honorsproj.mariogame;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Point;
+import android.util.Log;
+
+import com.honorsproj.mariogame.core.SpriteSizes;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Everything GameView draws with. Images are decoded in parallel on a few
+// background threads and packed into the atlas, all off the UI thread.
+class GameAssets
+{
+    final static String TAG = "GameAssets";
+
+    // Called on the loading thread once everything is ready
+    interface Listener
+    {
+        void onAssetsLoaded(GameAssets assets);
+    }
+
+    SpriteAtlas atlas;
+    int groundHeight;   // Height the ground is drawn at
+    SpriteSizes sizes;  // Sprite sizes that match the images
+    long loadMillis;    // Time taken to load everything
+
+    // Starts loading and returns straight away
+    static void loadAsync(final Resources res, final int sWidth, final int sHeight,
+                          final Listener listener)
+    {
+        Thread loading = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                listener.onAssetsLoaded(load(res, sWidth, sHeight));
+            }
+        }, "GameAssets");
+
+        loading.start();
+    }
+
+    // Loads everything, blocking until done
+    static GameAssets load(Resources res, int sWidth, int sHeight)
+    {
+        long start = System.nanoTime();
+
+        AssetLoader loader = new AssetLoader(res);
+        SpriteAtlas.Builder images = new SpriteAtlas.Builder(SpriteAtlas.FRAME_COUNT);
+
+        // Leave a core for the UI thread
+        int threads = Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayList<Future<?>> jobs = new ArrayList<Future<?>>();
+
+        // Goombas and fireballs are sized relative to Mario
+        Point mario = loader.naturalSize(R.drawable.mario1);
+
+        // Buttons are decoded at the size they are drawn
+        int moveW = (int)(sWidth * 0.22);
+        int buttonW = (int)(sWidth * 0.11);
+        int buttonH = (int)(sHeight * 0.5);
+
+        // Ground is stretched to the screen width when drawn
+        jobs.add(pool.submit(new Decode(loader, images, R.drawable.mario_ground,
+                SpriteAtlas.GROUND, -1, -1, -1)));
+
+        jobs.add(pool.submit(new Decode(loader, images, R.drawable.movement_button,
+                SpriteAtlas.MOVE_RIGHT, SpriteAtlas.MOVE_LEFT, moveW, buttonH)));
+        jobs.add(pool.submit(new Decode(loader, images, R.drawable.jump_button,
+                SpriteAtlas.JUMP_BUTTON, -1, buttonW, buttonH)));
+        jobs.add(pool.submit(new Decode(loader, images, R.drawable.fire_button,
+                SpriteAtlas.FIRE_BUTTON, -1, buttonW, buttonH)));
+
+        jobs.add(pool.submit(new Decode(loader, images, R.drawable.tube,
+                SpriteAtlas.TUBE, -1, -1, -1)));
+
+        int[] marioIds = { R.drawable.mario1, R.drawable.mario2, R.drawable.mario3,
+                R.drawable.mario4, R.drawable.mario5 };
+        for (int i = 0; i < 5; i++)
+        {
+            jobs.add(pool.submit(new Decode(loader, images, marioIds[i],
+                    SpriteAtlas.MARIO + i, SpriteAtlas.MARIO_FLIP + i, mario.x, mario.y)));
+        }
+
+        jobs.add(pool.submit(new Decode(loader, images, R.drawable.goomba,
+                SpriteAtlas.GOOMBA, SpriteAtlas.GOOMBA_FLIP,
+                (int)(mario.x * 0.8), (int)(mario.y * 0.6))));
+        jobs.add(pool.submit(new Decode(loader, images, R.drawable.goomba_fire,
+                SpriteAtlas.GOOMBA_DYING, SpriteAtlas.GOOMBA_DYING_FLIP,
+                (int)(mario.x * 0.8), (int)(mario.y * 0.6))));
+
+        jobs.add(pool.submit(new Decode(loader, images, R.drawable.fireball,
+                SpriteAtlas.FIREBALL, SpriteAtlas.FIREBALL_FLIP,
+                (int)(mario.y * 0.4), (int)(mario.y * 0.4))));
+
+        try
+        {
+            for (int i = 0; i < jobs.size(); i++)
+            {
+                jobs.get(i).get();
+            }
+        }
+        catch (Exception e)
+        {
+            Log.e("Error:", "loading assets", e);
+            System.exit(1);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        loader.logSummary();
+
+        GameAssets assets = new GameAssets();
+        assets.atlas = images.build();
+        SpriteAtlas atlas = assets.atlas;
+        Log.i(TAG, "Sprite atlas: " + atlas.bitmap.getWidth() + "x"
+                + atlas.bitmap.getHeight() + ", " + atlas.byteCount() / 1024 + " KB");
+
+        assets.groundHeight = atlas.height(SpriteAtlas.GROUND);
+
+        // Sprite sizes depend on the bitmaps (bitmap size can vary)
+        SpriteSizes sizes = new SpriteSizes();
+        sizes.marioW = atlas.width(SpriteAtlas.MARIO);
+        sizes.marioH = atlas.height(SpriteAtlas.MARIO);
+        sizes.tubeW = atlas.width(SpriteAtlas.TUBE);
+        sizes.tubeH = atlas.height(SpriteAtlas.TUBE);
+        sizes.goombaW = atlas.width(SpriteAtlas.GOOMBA);
+        sizes.goombaH = atlas.height(SpriteAtlas.GOOMBA);
+        sizes.fireballW = atlas.width(SpriteAtlas.FIREBALL);
+        sizes.fireballH = atlas.height(SpriteAtlas.FIREBALL);
+        assets.sizes = sizes;
+
+        assets.loadMillis = (System.nanoTime() - start) / 1000000;
+        Log.i(TAG, "Assets loaded in " + assets.loadMillis + " ms on " + threads + " threads");
+
+        return assets;
+    }
+
+    // Returns a mirror image of a bitmap (used for sprites facing left)
+    static Bitmap flip(Bitmap b)
+    {
+        Matrix matrix = new Matrix();
+        matrix.preScale(-1, 1);
+
+        return Bitmap.createBitmap(b, 0, 0, b.getWidth(), b.getHeight(), matrix, false);
+    }
+
+    // Decodes one image into the atlas, plus a mirrored copy if flipId is not -1
+    static class Decode implements Runnable
+    {
+        final AssetLoader loader;
+        final SpriteAtlas.Builder images;
+        final int resId;
+        final int id, flipId;
+        final int w, h;
+
+        Decode(AssetLoader loader, SpriteAtlas.Builder images, int resId,
+               int id, int flipId, int w, int h)
+        {
+            this.loader = loader;
+            this.images = images;
+            this.resId = resId;
+            this.id = id;
+            this.flipId = flipId;
+            this.w = w;
+            this.h = h;
+        }
+
+        @Override
+        public void run()
+        {
+            Bitmap image = loader.load(resId, w, h);
+            images.add(id, image);
+
+            if (flipId != -1)
+                images.add(flipId, flip(image));
+        }
+    }
+}
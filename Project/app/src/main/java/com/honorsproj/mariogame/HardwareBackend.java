@@ -0,0 +1,60 @@
+package com.honorsproj.mariogame;
+
+import android.annotation.TargetApi;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+// Draws with the GPU through a hardware canvas (API 23 and up): the
+// holder's from API 26, which locks out surfaceDestroyed like lockCanvas()
+// does, and the Surface's before that, which GameView guards itself.
+// Bitmaps are uploaded as textures the first time they are drawn, so the
+// atlas and static layer cost little per frame after that. The buffer
+// starts out undefined every frame, so the whole screen is always redrawn.
+@TargetApi(Build.VERSION_CODES.M)
+class HardwareBackend extends RenderBackend
+{
+    HardwareBackend(SurfaceHolder holder)
+    {
+        super(holder);
+    }
+
+    @Override
+    int kind()
+    {
+        return HARDWARE;
+    }
+
+    @Override
+    boolean keepsContents()
+    {
+        return false;
+    }
+
+    @Override
+    Canvas lock(Rect dirty)
+    {
+        if (dirty != null)
+            dirty.set(holder.getSurfaceFrame());
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
+            return holder.lockHardwareCanvas();
+
+        Surface surface = holder.getSurface();
+        if (!surface.isValid())
+            return null;
+
+        return surface.lockHardwareCanvas();
+    }
+
+    @Override
+    void post(Canvas c)
+    {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
+            holder.unlockCanvasAndPost(c);
+        else
+            holder.getSurface().unlockCanvasAndPost(c);
+    }
+}
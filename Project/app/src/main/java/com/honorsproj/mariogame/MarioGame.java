@@ -3,24 +3,49 @@ package com.honorsproj.mariogame;
 import androidx.appcompat.app.AppCompatActivity;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.View;
 
-import java.lang.reflect.Array;
+import com.honorsproj.mariogame.core.DirtyRegion;
+import com.honorsproj.mariogame.core.FixedStep;
+import com.honorsproj.mariogame.core.FramePacer;
+import com.honorsproj.mariogame.core.FrameTimings;
+import com.honorsproj.mariogame.core.InputLog;
+import com.honorsproj.mariogame.core.LatencyHistogram;
+import com.honorsproj.mariogame.core.LevelFile;
+import com.honorsproj.mariogame.core.Model;
+import com.honorsproj.mariogame.core.RenderSnapshot;
+import com.honorsproj.mariogame.core.Sprite;
+import com.honorsproj.mariogame.core.SpriteSizes;
+import com.honorsproj.mariogame.core.TouchInput;
+import com.honorsproj.mariogame.core.TripleBuffer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Locale;
 
 public class MarioGame extends AppCompatActivity
 {
@@ -28,10 +53,14 @@ public class MarioGame extends AppCompatActivity
     GameView view;
     GameController controller;
 
+    boolean resumed;    // True while the activity is in the foreground
+    long createTime;    // When onCreate ran, for measuring time to first frame
+
     @Override
     protected void onCreate(Bundle savedInstanceState)
     {
         super.onCreate(savedInstanceState);
+        createTime = SystemClock.uptimeMillis();
 
         // Sets game to fullscreen
         View decorView = getWindow().getDecorView();
@@ -43,11 +72,54 @@ public class MarioGame extends AppCompatActivity
                 // | View.SYSTEM_UI_FLAG_HIDE_NAVIGATION
                 | View.SYSTEM_UI_FLAG_FULLSCREEN);
 
-        model = new Model();
+        model = new Model(new SpriteSizes(), loadLevel(R.raw.level1));
         view = new GameView(this, model);
         controller = new GameController(model, view);
+        controller.levelId = getResources().getResourceEntryName(R.raw.level1);
+        controller.pacer.periodNanos =
+                (long)(1e9 / getWindowManager().getDefaultDisplay().getRefreshRate());
 
         setContentView(view);
+
+        // Decoding happens in the background; see onAssetsReady()
+        view.loadAssets();
+    }
+
+    // Maps a level made by :core:convertLevels straight out of the APK
+    // (levels are stored uncompressed, see build.gradle)
+    LevelFile loadLevel(int resId)
+    {
+        long start = SystemClock.uptimeMillis();
+        LevelFile level = null;
+
+        try
+        {
+            AssetFileDescriptor fd = getResources().openRawResourceFd(resId);
+            FileInputStream in = fd.createInputStream();
+            level = new LevelFile(in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    fd.getStartOffset(), fd.getLength()));
+            in.close();     // The mapping stays valid after closing
+        }
+        catch (IOException e)
+        {
+            Log.e("Error:", "loading level", e);
+            System.exit(1);
+        }
+
+        Log.i("MarioGame", "Level mapped in " + (SystemClock.uptimeMillis() - start)
+                + " ms, " + level.recordCount + " records");
+
+        return level;
+    }
+
+    // Called on the UI thread when the view's images have loaded
+    void onAssetsReady()
+    {
+        Log.i("MarioGame", "Assets ready " + (SystemClock.uptimeMillis() - createTime)
+                + " ms after onCreate");
+
+        if (resumed)
+            controller.resume();
     }
 
     @Override
@@ -60,779 +132,569 @@ public class MarioGame extends AppCompatActivity
     protected void onResume()
     {
         super.onResume();
-        controller.resume();
+        resumed = true;
+
+        // Otherwise the game starts once its assets are loaded
+        if (view.assetsReady)
+            controller.resume();
     }
 
     @Override
     protected void onPause()
     {
         super.onPause();
+        resumed = false;
         controller.pause();
     }
 
-    // SPRITE CLASS
-    static abstract class Sprite
-    {
-        int x, y;   // Position Coordinates
-        int w, h;   // Size of bitmap (and thus sprite)
-        boolean flip;   // True if sprite faces left
-        boolean kill;   // Marks sprite to be removed from game
-
-        abstract void update();
-
-        boolean isMario()
-        {
-            return false;
-        }
-
-        boolean isTube()
-        {
-            return false;
-        }
-
-        boolean isFireball()
-        {
-            return false;
-        }
-
-        boolean isGoomba()
-        {
-            return false;
-        }
-
-        // Returns true iff the two sprites collide together
-        boolean collidesWith(Sprite s)
-        {
-            if (!(x + w < s.x)
-                && !(x > s.x + s.w)
-                && !(y + h < s.y)
-                && !(y > s.y + s.h))
-            {
-                return true;
-            }
-            else
-                return false;
-        }
-    }
-
-    // GOOMBA CLASS
-    static class Goomba extends Sprite
-    {
+    class GameView extends SurfaceView implements SurfaceHolder.Callback
+    {   // Note: I made this class non-static so I could get screen size
+        SurfaceHolder ourHolder;
+        Canvas canvas;
+        Paint paint;
+        Paint paintAlpha;
         Model model;
+        GameController controller;
+
+        int sWidth;     // Screen width
+        int sHeight;    // Screen height
 
-        // When goomba gets hit by a fireball...
-        boolean dying;
-        int deathTimer;
-        // Vertical velocity
-        float velY;
+        // Culling: sprites further than cullMargin off screen are left out
+        // of render snapshots (counts shown in the timing overlay)
+        final static int cullMargin = 100;
+        int drawnCount;     // Sprites drawn last frame
+        int culledCount;    // Sprites skipped last frame
+
+        // Background, ground and buttons drawn once into one bitmap
+        Bitmap staticLayer;
+        volatile boolean staticLayerDirty = true;
+        volatile boolean useStaticLayer = true; // False draws them one by one every
+                                                // frame (toggled by a five finger tap)
+
+        // Only the part of the screen that changed is repainted, unless the
+        // view scrolled. Only the software backend keeps the last frame, so
+        // the hardware backend always repaints everything.
+        final DirtyRegion dirty = new DirtyRegion();
+        final Rect dirtyRect = new Rect();
+        volatile boolean useDirtyRects = true;  // False repaints the whole screen every
+                                                // frame (toggled by a six finger tap)
+        boolean trackedLast;    // Last frame drawn recorded where its sprites were
+
+        // Where frames are drawn (hardware where supported), and the time
+        // from lock to post of frames drawn with each kind of backend
+        RenderBackend backend;
+        final LatencyHistogram[] backendFrames = {
+                new LatencyHistogram(), new LatencyHistogram() };
+        volatile boolean switchBackend;     // Set by a four finger tap, for comparing backends
+
+        // Held by the render thread from locking a frame to posting it, so
+        // surfaceDestroyed waits for the frame before the surface goes away.
+        // API 26 and up lock the holder for this anyway, but the Surface's
+        // own hardware canvas on API 23 to 25 does not.
+        final Object surfaceLock = new Object();
+        boolean surfaceReady;   // Between surfaceCreated and surfaceDestroyed
+
+        float drawMillis;   // Average time to draw a frame (shown in the timing overlay)
+
+        // Time spent in each phase of a frame
+        final FrameTimings timings = new FrameTimings();
+        volatile boolean showTimings;   // Overlay toggled by a three finger tap
+        int tapFingers;     // Most fingers down at once since the first went down
+        String[] timingLines = new String[0];   // Overlay text, refreshed now and then
+        int framesSinceTimingLines;
+        Paint timingPaint;
+
+        // Every image in the game, packed into one bitmap (loaded in the background)
+        SpriteAtlas atlas;
+        int groundHeight;   // Height the ground is drawn at
+        boolean assetsReady;    // Set on the UI thread once loading is done
+
+        long timeToFirstFrame = -1;     // Milliseconds from onCreate to the first game frame
 
-        Goomba(Model m, int posX, int posY)
+        public GameView(Context context, Model m)
         {
+            super(context);
             model = m;
 
-            x = posX;
-            y = posY;
-            w = -1;
-            h = -1;
+            // Initialize ourHolder and paint objects
+            ourHolder = getHolder();
+            ourHolder.addCallback(this);
+            backend = RenderBackend.create(ourHolder);
+            Log.i("GameView", "Drawing with the " + backend.name() + " backend");
+            paint = new Paint();
+            // Paint used for buttons to make them translucent
+            paintAlpha = new Paint();
+            paintAlpha.setAlpha(90);
+            timingPaint = new Paint();
+            timingPaint.setColor(Color.BLACK);
+            timingPaint.setTypeface(Typeface.MONOSPACE);
 
-            dying = false;
-            deathTimer = 8;
-            kill = false;
+            // Get screen specs
+            DisplayMetrics screenSpec = new DisplayMetrics();
+            getWindowManager().getDefaultDisplay().getMetrics(screenSpec);
+            sWidth = screenSpec.widthPixels;
+            sHeight = screenSpec.heightPixels;
 
-            velY = 0.0f;
+            model.viewWidth = sWidth;
         }
 
-        @Override
-        void update() {
-            if (flip && !dying)   // Move to right. Goomba orientation is backwards, I know.
-                x += 10;                        // Sorry about it.
-            else if (!dying)
-                x -= 10;
-
-            // Time until death
-            if (dying && deathTimer < 1)
-            {
-                kill = true;
-            }
-            else if (dying)
-            {
-                deathTimer--;
-            }
-
-            Iterator<Sprite> sprites = model.sprites.iterator();
-
-            while (sprites.hasNext())
+        // Loads images in the background. The game starts once they are ready.
+        void loadAssets()
+        {
+            GameAssets.loadAsync(getResources(), sWidth, sHeight, new GameAssets.Listener()
             {
-                Sprite s = sprites.next();
-
-                if ( !dying && s.isFireball() && collidesWith(s))
-                {
-                    dying = true;   // Mark for death
-                    s.kill = true;
-                }
-                else if (s.isTube() && collidesWith(s))
+                @Override
+                public void onAssetsLoaded(GameAssets assets)
                 {
-                    flip = !flip;   // Flip goomba if they collide with a tube
-                }
-            }
-
-            // Keeps goomba from briefly clipping through the ground
-            if (model.ground - y - h < velY)
-            {
-                y = model.ground - h;
-                velY = 0;
-            }
-            // Goomba falling normally
-            else if (y + h < model.ground)
-            {
-                velY += 1.4;
-            }
-            else
-            {
-                velY = 0;
-            }
+                    // The game thread has not started yet, so the model is safe to change
+                    atlas = assets.atlas;
+                    groundHeight = assets.groundHeight;
+                    model.ground = sHeight - groundHeight;
+                    model.setSpriteSizes(assets.sizes);
 
-            // Update vertical position
-            y += velY;
-        }
+                    // Only chunks near the screen are kept in the game; the
+                    // rest of the level waits in its chunks
+                    model.useStreaming(sWidth);
 
-        @Override
-        boolean isGoomba()
-        {
-            return true;
+                    post(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            assetsReady = true;
+                            onAssetsReady();
+                        }
+                    });
+                }
+            });
         }
-    }
-
-    // FIREBALL CLASS
-    static class Fireball extends Sprite
-    {
-        Model model;
-        float velY;
-        int speed;  // Horizontal speed
 
-        Fireball(Model m, int posX, int posY, boolean flip)
+        // Shown until the assets are ready
+        void drawLoading(SurfaceHolder holder)
         {
-            model = m;
+            Canvas c = holder.lockCanvas();
+            if (c == null)
+                return;
 
-            x = posX;
-            y = posY;
-            w = -1;
-            h = -1;
+            Paint text = new Paint();
+            text.setColor(Color.WHITE);
+            text.setTextSize(sHeight * 0.06f);
+            text.setTextAlign(Paint.Align.CENTER);
 
-            this.flip = flip;
-            kill = false;
+            c.drawColor(Color.argb(255, 0, 232, 252));
+            c.drawText("Loading...", sWidth / 2, sHeight / 2, text);
 
-            velY = 0.0f;
-            speed = 25;
+            holder.unlockCanvasAndPost(c);
         }
 
-        @Override
-        void update()
+        void setController(GameController c)
         {
-            // Horizontal movement
-            if (flip)
-                x -= speed;
-            else
-                x += speed;
-
-            // Remove fireball from game once it has left the screen + some safety
-            //              <----- TO DO ----->
-
-            // Vertical motion
-            if (y + h < model.ground)
-            {
-                velY += 2.0f;
-            }
-
-            y += velY;
-
-            if (y + h > model.ground)
-            {
-                y = model.ground - h;
-                velY = -velY;
-            }
+            controller = c;
         }
 
-        @Override
-        boolean isFireball()
+        // Copies what the next frame needs out of the model. Called on the
+        // simulation thread after ticking.
+        void capture(RenderSnapshot snap)
         {
-            return true;
-        }
-    }
+            // Cover everywhere the screen can be while interpolating
+            int left = Math.min(model.lastScrollVal, model.scrollVal) - cullMargin;
+            int right = Math.max(model.lastScrollVal, model.scrollVal) + sWidth + cullMargin;
 
-    // TUBE CLASS
-    static class Tube extends Sprite
-    {
-        Tube(int posX, int posY)
-        {
-            x = posX;
-            y = posY;
-            // This is hacky
-            w = -1;
-            h = -1;
+            snap.capture(model, left, -cullMargin, right, sHeight + cullMargin);
         }
 
-        @Override
-        void update()
+        // Draws a snapshot of the game. alpha is how far (0 to 1) time has
+        // moved from the snapshot's tick towards the next one, and is used
+        // to interpolate sprite positions so movement stays smooth at any
+        // frame rate. Called on the render thread; never touches the model.
+        public void update(RenderSnapshot snap, float alpha)
         {
+            // Held until the frame is posted, so the surface cannot be
+            // destroyed while it is locked
+            synchronized (surfaceLock)
+            {
+                if (surfaceReady)
+                    draw(snap, alpha);
+            }
         }
 
-        @Override
-        boolean isTube()
+        // The body of update(), run while the surface is known to be there
+        void draw(RenderSnapshot snap, float alpha)
         {
-            return true;
-        }
-    }
-
-    // MARIO CLASS
-    static class Mario extends Sprite
-    {
-        Model model;    // Reference to game Model for collision detection
+            if (!ourHolder.getSurface().isValid())
+                return;
 
-        int prevX, prevY;   // Previous position coordinates (from last frame)
+            // Interpolated screen offset
+            float scroll = snap.lastScrollVal
+                    + (snap.scrollVal - snap.lastScrollVal) * alpha;
 
-        float velY; // Vertical velocity
-        int frame;  // Animation frame
-        boolean fireReady;   // Keeps fireball action semi-automatic
+            // Work out what changed since the last frame. Tubes only move
+            // when the view scrolls, which repaints everything anyway.
+            dirty.begin(sWidth, sHeight, scroll);
+            if (switchBackend)
+            {
+                switchBackend = false;
+                backend = backend.kind() == RenderBackend.SOFTWARE
+                        ? RenderBackend.create(ourHolder) : new SoftwareBackend(ourHolder);
+                Log.i("GameView", "Drawing with the " + backend.name() + " backend");
 
-        boolean jumping;
-        int cooldownTime;
-        int jumpCooldown;
-        int maxLimit;
-        int jumpLimit;
+                // The new backend's buffers hold nothing yet
+                dirty.invalidateAll();
+            }
 
-        Mario(Model m, int posX, int posY)
-        {
-            model = m;
-            x = posX;
-            y = posY;
+            // Without a kept frame there is nothing to track. A frame after
+            // one that was not tracked cannot know what to erase.
+            boolean tracking = useDirtyRects && backend.keepsContents();
+            if (!tracking || !trackedLast || staticLayerDirty)
+                dirty.invalidateAll();
 
-            flip = false;
+            if (tracking)
+            {
+                // The overlay is repainted too (and erased the frame after it is hidden)
+                if (showTimings)
+                {
+                    float size = sHeight * 0.03f;
+                    dirty.add(sWidth * 0.25f, sHeight * 0.55f - size, (int)(sWidth * 0.75f),
+                            (int)(size * 1.2f * (timingLines.length + 1)));
+                }
 
-            velY = 0.0f;
-            frame = 0;
-            fireReady = true;
+                for (int i = 0; i < snap.count; i++)
+                {
+                    if (snap.kind[i] == Sprite.TUBE)
+                        continue;
 
-            jumping = false;
-            cooldownTime = 4;
-            jumpCooldown = 0;
-            maxLimit = 9;
-            jumpLimit = maxLimit;
-        }
+                    int id = atlasId(snap, i);
+                    dirty.add(drawX(snap, i, alpha, scroll), drawY(snap, i, alpha),
+                            atlas.width(id), atlas.height(id));
+                }
 
-        @Override
-        void update()
-        {
-            if (    jumping
-                    && jumpCooldown == cooldownTime
-                    && jumpLimit > 0
-                    && velY <= 0)
-            {
-                velY = -23;
-                jumpLimit--;
-            }
-            // Keeps Mario from briefly clipping through the ground
-            else if (model.ground - y - h < velY)
-            {
-                y = model.ground - h;
-                velY = 0;
-            }
-            // Mario falling normally
-            else if (y + h < model.ground)
-            {
-                velY += 1.4;
-            }
-            else
-            {
-                velY = 0;
+                // Nothing but tubes on screen (Mario is always drawn, so rare)
+                if (dirty.isEmpty())
+                    dirty.invalidateAll();
             }
 
-            // Update vertical position
-            y += velY;
-
-            if (!jumping && jumpLimit < maxLimit && jumpCooldown == cooldownTime)
+            long start = System.nanoTime();
+            try
             {
-                jumpCooldown = 0;
-                jumpLimit = maxLimit;
+                if (dirty.isFull())
+                {
+                    canvas = backend.lock(null);
+                    dirtyRect.set(0, 0, sWidth, sHeight);
+                }
+                else
+                {
+                    // The surface may grow the rectangle, and everything in
+                    // it has to be repainted
+                    dirtyRect.set(dirty.left, dirty.top, dirty.right, dirty.bottom);
+                    canvas = backend.lock(dirtyRect);
+                }
             }
-
-            // Mario-Tube collision detection
-            Iterator<Sprite> sprites = model.sprites.iterator();
-
-            while (sprites.hasNext())
+            catch (IllegalStateException e)
             {
-                Sprite s = sprites.next();
+                if (backend.kind() == RenderBackend.SOFTWARE)
+                    throw e;
 
-                if (s.isTube() && this.collidesWith(s))
+                // The surface went away as it was locked, so skip the frame
+                // and keep the hardware backend for the next surface
+                if (!ourHolder.getSurface().isValid())
                 {
-                    fixCollision(s);
+                    dirty.invalidateAll();
+                    return;
                 }
-            }
-
-            // Prevents Mario from jumping midair
-            if (jumpCooldown == cooldownTime && velY == 0)
-            {
-                jumpCooldown = 0;
-            }
 
-            // jumpCooldown timer
-            if (jumpCooldown < cooldownTime && velY == 0)
-            {
-                jumpCooldown++;
+                // Some devices refuse a hardware canvas, so fall back for good
+                Log.e("Error:", "locking " + backend.name() + " canvas", e);
+                backend = new SoftwareBackend(ourHolder);
+                dirty.invalidateAll();
+                return;
             }
+            long t = timings.end(FrameTimings.LOCK, start);
 
-            // Store position to be referenced next frame during collisions
-            prevX = x;
-            prevY = y;
-        }
+            if (canvas == null)
+                return;
 
-        void fire()
-        {
-            if (flip)
+            // Background, ground and buttons
+            if (useStaticLayer)
             {
-                model.sprites.add(new Fireball(model, x - (int)(w*0.1),
-                        y + (int)(h*0.2), true));
+                if (staticLayerDirty)
+                    buildStaticLayer();
+
+                canvas.drawBitmap(staticLayer, dirtyRect, dirtyRect, null);
             }
             else
             {
-                model.sprites.add(new Fireball(model, x + (int)(w*0.75),
-                        y + (int)(h*0.2), false));
+                drawStatic(canvas);
             }
-        }
 
-        // Fixes collisions between Mario and tubes
-        void fixCollision(Sprite s)
-        {
-            // Mario coming from above
-            if (prevY + h < s.y)
-            {
-                // Corrects Mario's position
-                y = s.y - h - 1;
-                // Stops Mario's fall
-                velY = 0;
-            }
-            // Mario coming from the right
-            else if (prevX > s.x + s.w)
+            drawnCount = 0;
+            culledCount = snap.total - snap.count;
+
+            // Draw visible sprites that overlap the repainted area
+            for (int i = 0; i < snap.count; i++)
             {
-                int viewCorrect = x;
+                float drawX = drawX(snap, i, alpha, scroll);
+                float drawY = drawY(snap, i, alpha);
+                int id = atlasId(snap, i);
 
-                // Corrects Mario's position
-                x = s.x + s.w + 1;
+                if (drawX > dirtyRect.right || drawX + atlas.width(id) < dirtyRect.left
+                        || drawY > dirtyRect.bottom || drawY + atlas.height(id) < dirtyRect.top)
+                    continue;
 
-                // Corrects scroll position
-                viewCorrect -= x;
-                model.scrollVal -= viewCorrect;
+                atlas.draw(canvas, id, drawX, drawY, paint);
+                drawnCount++;
             }
-            // Mario coming from the left
-            else
-            {
-                int viewCorrect = x;
 
-                // Corrects Mario's position
-                x = s.x - w - 1;
+            if (showTimings)
+                drawTimings(canvas);
 
-                // Corrects scroll position
-                viewCorrect -= x;
-                model.scrollVal -= viewCorrect;
+            t = timings.end(FrameTimings.DRAW, t);
+            backend.post(canvas);
+            t = timings.end(FrameTimings.POST, t);
+            backendFrames[backend.kind()].record(t - start);
+            dirty.end(dirtyRect.left, dirtyRect.top, dirtyRect.right, dirtyRect.bottom);
+            trackedLast = tracking;
+
+            // Running average, so a change to drawing shows up as a change here
+            float millis = (System.nanoTime() - start) / 1e6f;
+            drawMillis += (millis - drawMillis) * 0.05f;
+
+            if (timeToFirstFrame < 0)
+            {
+                timeToFirstFrame = SystemClock.uptimeMillis() - createTime;
+                Log.i("GameView", "Time to first frame: " + timeToFirstFrame + " ms");
             }
         }
 
-        @Override
-        boolean isMario()
+        // Interpolated screen position of a snapshot's sprite
+        float drawX(RenderSnapshot snap, int i, float alpha, float scroll)
         {
-            return true;
+            return snap.lastX[i] + (snap.x[i] - snap.lastX[i]) * alpha - scroll;
         }
-    }
 
-    static class Model
-    {
-        ArrayList<Sprite> sprites;
-        Mario mario;
-
-        int ground;     // y coordinate of top of ground
-        int scrollVal;  // Screen offset that changes as Mario moves
-
-        Model()
+        float drawY(RenderSnapshot snap, int i, float alpha)
         {
-            sprites = new ArrayList<Sprite>();  // ArrayList of all sprites in game
-            mario = new Mario(this, 500, 200);  // Extra reference to Mario
-            sprites.add(mario);
-
-            // Add tubes
-            sprites.add(new Tube(100, ground + 600));
-            sprites.add(new Tube(1100, ground + 700));
-            sprites.add(new Tube(1700, ground + 400));
-
-            // Add goomba
-            sprites.add(new Goomba(this, 1400, ground + 550));
-            sprites.add(new Goomba(this, 1500, ground + 550));
-            sprites.add(new Goomba(this, 500, ground + 550));
-            sprites.add(new Goomba(this, 1600, ground + 550));
+            return snap.lastY[i] + (snap.y[i] - snap.lastY[i]) * alpha;
         }
 
-        void update()
+        // Which frame of the atlas a snapshot's sprite is drawn with
+        int atlasId(RenderSnapshot snap, int i)
         {
-            Iterator<Sprite> allSprites = sprites.iterator();
+            boolean flip = snap.flip[i];
 
-            while (allSprites.hasNext())
+            switch (snap.kind[i])
             {
-                Sprite s = allSprites.next();
-
-                // Kills sprite if necessary
-                if (s.kill)
-                    allSprites.remove();
-                // Updates sprite otherwise
-                else
-                    s.update();
-            }
-        }
-    }
+                case Sprite.MARIO:
+                    return (flip ? SpriteAtlas.MARIO_FLIP : SpriteAtlas.MARIO) + snap.frame[i];
 
-    class GameView extends SurfaceView
-    {   // Note: I made this class non-static so I could get screen size
-        SurfaceHolder ourHolder;
-        Canvas canvas;
-        Paint paint;
-        Paint paintAlpha;
-        Model model;
-        GameController controller;
+                case Sprite.TUBE:
+                    return SpriteAtlas.TUBE;
 
-        int sWidth;     // Screen width
-        int sHeight;    // Screen height
+                case Sprite.GOOMBA:
+                    boolean dying = snap.frame[i] != 0;
+                    if (flip)
+                        return dying ? SpriteAtlas.GOOMBA_DYING_FLIP : SpriteAtlas.GOOMBA_FLIP;
+                    else
+                        return dying ? SpriteAtlas.GOOMBA_DYING : SpriteAtlas.GOOMBA;
 
-        // Ground image
-        Bitmap groundImg;
+                default:
+                    return flip ? SpriteAtlas.FIREBALL_FLIP : SpriteAtlas.FIREBALL;
+            }
+        }
 
-        // Button images
-        Bitmap moveRight;
-        Bitmap moveLeft;
-        Bitmap jumpButton;
-        Bitmap fireButton;
+        // Frame timings plus how much of the screen frames repaint, how many
+        // sprites they draw and how frames lined up with vsync
+        String[] summary()
+        {
+            ArrayList<String> lines = new ArrayList<String>();
+            Collections.addAll(lines, timings.summary());
+
+            lines.add(String.format(Locale.US,
+                    "repaint %.0f%% of screen (last %d px), dirty rects %s",
+                    dirty.averageFraction * 100, dirty.area, !backend.keepsContents()
+                            ? "n/a (" + backend.name() + ")" : useDirtyRects ? "on" : "off"));
+            lines.add(String.format(Locale.US, "sprites %d drawn, %d culled",
+                    drawnCount, culledCount));
+            lines.add(String.format(Locale.US, "draw %.2f ms avg, static layer %s",
+                    drawMillis, useStaticLayer ? "on" : "off"));
+            lines.add(String.format(Locale.US, "ticks %.1f/s, frames %.1f/s",
+                    controller.getMeasuredTickRate(), controller.getMeasuredFrameRate()));
+
+            FramePacer pacer = controller.pacer;
+            lines.add(String.format(Locale.US,
+                    "vsync %.1f Hz, draw every %d: %d drawn, %d skipped, %d dropped, %d janky",
+                    1e9 / pacer.periodNanos, pacer.interval(), pacer.frames, pacer.skipped,
+                    pacer.dropped, pacer.janky));
+
+            // Frame time of each backend that has drawn frames, current one marked
+            for (int i = 0; i < backendFrames.length; i++)
+            {
+                LatencyHistogram h = backendFrames[i];
+                if (h.count() == 0)
+                    continue;
+
+                lines.add(String.format(Locale.US,
+                        "%s%-8s frame p50 %.2f p95 %.2f max %.2f ms (n=%d)",
+                        i == backend.kind() ? "*" : " ", RenderBackend.names[i],
+                        h.percentile(50) / 1e6, h.percentile(95) / 1e6, h.max() / 1e6, h.count()));
+            }
 
-        // Mario images (normal orientation and reversed)
-        ArrayList<Bitmap> marioImg = new ArrayList<Bitmap>();
-        ArrayList<Bitmap> marioImg_flip = new ArrayList<Bitmap>();
+            return lines.toArray(new String[lines.size()]);
+        }
 
-        // Tube image
-        Bitmap tubeImg;
+        // Draws the frame timing overlay. The text is only rebuilt twice a
+        // second, as formatting it allocates.
+        void drawTimings(Canvas c)
+        {
+            if (framesSinceTimingLines++ >= 30)
+            {
+                timingLines = summary();
+                framesSinceTimingLines = 0;
+            }
 
-        // Fireball image
-        Bitmap fireImg;
-        Bitmap fireImg_flip;
+            float size = sHeight * 0.03f;
+            timingPaint.setTextSize(size);
 
-        // Goomba images (normal orientation and reversed)
-        ArrayList<Bitmap> goombaImg = new ArrayList<Bitmap>();
-        ArrayList<Bitmap> goombaImg_flip = new ArrayList<Bitmap>();
+            for (int i = 0; i < timingLines.length; i++)
+            {
+                c.drawText(timingLines[i], sWidth * 0.25f, sHeight * 0.55f + size * 1.2f * i,
+                        timingPaint);
+            }
+        }
 
-        public GameView(Context context, Model m)
+        // Writes the frame timings to logcat and appends them to
+        // frame_timings.txt in the app's files, then starts over.
+        // Only call while the game and render threads are stopped.
+        void dumpTimings()
         {
-            super(context);
-            model = m;
-
-            // Initialize ourHolder and paint objects
-            ourHolder = getHolder();
-            paint = new Paint();
-            // Paint used for buttons to make them translucent
-            paintAlpha = new Paint();
-            paintAlpha.setAlpha(90);
+            String[] lines = summary();
 
-            // Get screen specs
-            DisplayMetrics screenSpec = new DisplayMetrics();
-            getWindowManager().getDefaultDisplay().getMetrics(screenSpec);
-            sWidth = screenSpec.widthPixels;
-            sHeight = screenSpec.heightPixels;
-
-            // Matrix used to flip sprites
-            Matrix matrix = new Matrix();
-            matrix.preScale(-1, 1);
-
-            // Get ground image
-            Bitmap groundResize = BitmapFactory.decodeResource(this.getResources(),
-                                                          R.drawable.mario_ground);
-            // Resize ground image and store
-            groundImg = Bitmap.createScaledBitmap(groundResize, sWidth,
-                    groundResize.getHeight(), false);
-            // Set model's ground level
-            model.ground = sHeight - groundImg.getHeight();
-
-            // Get move button
-            moveRight = BitmapFactory.decodeResource(this.getResources(),
-                                             R.drawable.movement_button);
-            // Scale move button
-            moveRight = Bitmap.createScaledBitmap(
-                    moveRight,
-                    (int)(sWidth * 0.22),
-                    (int)(sHeight * 0.5),
-                    false);
-            // Reverse move button
-            moveLeft = Bitmap.createBitmap(
-                    moveRight,
-                    0,
-                    0,
-                    moveRight.getWidth(),
-                    moveRight.getHeight(),
-                    matrix,
-                    false);
-
-            // Get jump button
-            jumpButton = BitmapFactory.decodeResource(this.getResources(),
-                                                  R.drawable.jump_button);
-            // Scale jump button
-            jumpButton = Bitmap.createScaledBitmap(
-                    jumpButton,
-                    (int)(sWidth * 0.11),
-                    (int)(sHeight * 0.5),
-                    false);
-
-            // Get fireball button
-            fireButton = BitmapFactory.decodeResource(this.getResources(),
-                                                  R.drawable.fire_button);
-            // Scale fireball button
-            fireButton = Bitmap.createScaledBitmap(
-                    fireButton,
-                    (int)(sWidth * 0.11),
-                    (int)(sHeight * 0.5),
-                    false);
-
-            // Get tube image
-            tubeImg = BitmapFactory.decodeResource(this.getResources(),
-                                                      R.drawable.tube);
-
-            // Get Mario images
-            marioImg.add(BitmapFactory.decodeResource(this.getResources(),
-                                                      R.drawable.mario1));
-            marioImg.add(BitmapFactory.decodeResource(this.getResources(),
-                                                      R.drawable.mario2));
-            marioImg.add(BitmapFactory.decodeResource(this.getResources(),
-                                                      R.drawable.mario3));
-            marioImg.add(BitmapFactory.decodeResource(this.getResources(),
-                                                      R.drawable.mario4));
-            marioImg.add(BitmapFactory.decodeResource(this.getResources(),
-                                                      R.drawable.mario5));
-
-            // Creates ArrayList of reversed Mario bitmaps
-            for (int i = 0; i < 5; i++)
+            for (int i = 0; i < lines.length; i++)
             {
-                marioImg_flip.add(Bitmap.createBitmap(
-                        marioImg.get(i),
-                        0,
-                        0,
-                        marioImg.get(i).getWidth(),
-                        marioImg.get(i).getHeight(),
-                        matrix,
-                        false));
-
-                marioImg_flip.get(i).setDensity(DisplayMetrics.DENSITY_DEFAULT);
+                Log.i("FrameTimings", lines[i]);
             }
 
-            // Get normal goomba image
-            Bitmap goombaResize = BitmapFactory.decodeResource(this.getResources(),
-                    R.drawable.goomba);
-            // Resize and store normal goomba image
-            goombaImg.add(Bitmap.createScaledBitmap(goombaResize,
-                    (int)(marioImg.get(0).getWidth() * 0.8),
-                    (int)(marioImg.get(0).getHeight() * 0.6),
-                    false));
-
-            // Get dying goomba image
-            goombaResize = BitmapFactory.decodeResource(this.getResources(),
-                    R.drawable.goomba_fire);
-            // Resize and store dying goomba image
-            goombaImg.add(Bitmap.createScaledBitmap(goombaResize,
-                    (int)(marioImg.get(0).getWidth() * 0.8),
-                    (int)(marioImg.get(0).getHeight() * 0.6),
-                    false));
-
-            // Create ArrayList of reversed Goomba bitmaps
-            for (int i = 0; i < 2; i++)
+            try
             {
-                goombaImg_flip.add(Bitmap.createBitmap(
-                        goombaImg.get(i),
-                        0,
-                        0,
-                        goombaImg.get(i).getWidth(),
-                        goombaImg.get(i).getHeight(),
-                        matrix,
-                        false));
-
-                goombaImg_flip.get(i).setDensity(DisplayMetrics.DENSITY_DEFAULT);
+                FileWriter out = new FileWriter(new File(getContext().getFilesDir(),
+                        "frame_timings.txt"), true);
+                out.write("session ending " + System.currentTimeMillis() + "\n");
+                for (int i = 0; i < lines.length; i++)
+                {
+                    out.write(lines[i] + "\n");
+                }
+                out.close();
+            }
+            catch (IOException e)
+            {
+                // Losing the stats is no reason to stop the game
+                Log.e("Error:", "writing frame timings", e);
             }
 
-            // Sets dimensions of Mario sprite (since bitmap size can vary)
-            model.mario.w = marioImg.get(0).getWidth();
-            model.mario.h = marioImg.get(0).getHeight();
-
-            // Get fireball image
-            Bitmap fireResize = BitmapFactory.decodeResource(this.getResources(),
-                                                            R.drawable.fireball);
-            // Resize fireball image and store
-            fireImg = Bitmap.createScaledBitmap(fireResize,
-                    (int)(model.mario.h * 0.4),
-                    (int)(model.mario.h * 0.4),
-                    false);
-
-            // Store reversed fireball bitmap
-            fireImg_flip = Bitmap.createBitmap(
-                    fireImg,
-                    0,
-                    0,
-                    fireImg.getWidth(),
-                    fireImg.getHeight(),
-                    matrix,
-                    false);
-
-            fireImg_flip.setDensity(DisplayMetrics.DENSITY_DEFAULT);
-        }
-
-        void setController(GameController c)
-        {
-            controller = c;
+            timings.reset();
+            controller.pacer.reset();
+            for (int i = 0; i < backendFrames.length; i++)
+            {
+                backendFrames[i].reset();
+            }
         }
 
-        public void update()
+        // Draws everything that does not move: background, ground and buttons
+        void drawStatic(Canvas c)
         {
-            if (!ourHolder.getSurface().isValid())
-                return;
-            canvas = ourHolder.lockCanvas();
-
             // Draw the background color
-            canvas.drawColor(Color.argb(255, 0, 232, 252));
+            c.drawColor(Color.argb(255, 0, 232, 252));
 
             // Draw the ground
-            canvas.drawBitmap(groundImg, 0, sHeight - groundImg.getHeight(), paint);
+            atlas.draw(c, SpriteAtlas.GROUND, 0, sHeight - groundHeight,
+                    sWidth, groundHeight, paint);
+
+            // DRAW BUTTONS (decoded at these sizes, unless the surface has changed)
+            float moveW = (int)(sWidth * 0.22);
+            float buttonW = (int)(sWidth * 0.11);
+            float buttonH = (int)(sHeight * 0.5);
 
-            // DRAW BUTTONS
             // Draw right move
-            canvas.drawBitmap(
-                    moveRight,
-                    (float)(sWidth * 0.78),
-                    (float)(sHeight * 0.5),
-                    paintAlpha);
+            atlas.draw(c, SpriteAtlas.MOVE_RIGHT,
+                    (float)(sWidth * 0.78), (float)(sHeight * 0.5),
+                    moveW, buttonH, paintAlpha);
 
             // Draw left move
-            canvas.drawBitmap(
-                    moveLeft,
-                    0,
-                    (float)(sHeight * 0.5),
-                    paintAlpha);
+            atlas.draw(c, SpriteAtlas.MOVE_LEFT,
+                    0, (float)(sHeight * 0.5),
+                    moveW, buttonH, paintAlpha);
 
             // Draw jump button (right)
-            canvas.drawBitmap(
-                    jumpButton,
-                    (float)(sWidth * 0.89),
-                    0,
-                    paintAlpha);
+            atlas.draw(c, SpriteAtlas.JUMP_BUTTON,
+                    (float)(sWidth * 0.89), 0,
+                    buttonW, buttonH, paintAlpha);
 
             // Draw jump button (left)
-            canvas.drawBitmap(
-                    jumpButton,
-                    0,
-                    0,
-                    paintAlpha);
+            atlas.draw(c, SpriteAtlas.JUMP_BUTTON,
+                    0, 0,
+                    buttonW, buttonH, paintAlpha);
 
             // Draw fireball button (right)
-            canvas.drawBitmap(
-                    fireButton,
-                    (float)(sWidth * 0.78),
-                    0,
-                    paintAlpha);
+            atlas.draw(c, SpriteAtlas.FIRE_BUTTON,
+                    (float)(sWidth * 0.78), 0,
+                    buttonW, buttonH, paintAlpha);
 
             // Draw fireball button (left)
-            canvas.drawBitmap(
-                    fireButton,
-                    (float)(sWidth * 0.11),
-                    0,
-                    paintAlpha);
-
-            // Draw all sprites
-            Iterator<Sprite> sprites = model.sprites.iterator();
+            atlas.draw(c, SpriteAtlas.FIRE_BUTTON,
+                    (float)(sWidth * 0.11), 0,
+                    buttonW, buttonH, paintAlpha);
+        }
 
-            while (sprites.hasNext())
+        // Draws the static layer once so frames can copy it in one go
+        void buildStaticLayer()
+        {
+            if (staticLayer == null
+                    || staticLayer.getWidth() != sWidth
+                    || staticLayer.getHeight() != sHeight)
             {
-                Sprite s = sprites.next();
+                staticLayer = Bitmap.createBitmap(sWidth, sHeight, Bitmap.Config.ARGB_8888);
+            }
 
-                // Draws Mario
-                if (s.isMario())
-                {
-                    int frame = model.mario.frame;  // Store animation frame
+            drawStatic(new Canvas(staticLayer));
+            // Background is opaque, which lets the copy skip blending
+            staticLayer.setHasAlpha(false);
 
-                    if (s.flip)
-                    {
-                        canvas.drawBitmap(marioImg_flip.get(frame),
-                                s.x - model.scrollVal, s.y, paint);
-                    }
-                    else
-                    {
-                        canvas.drawBitmap(marioImg.get(frame),
-                                s.x - model.scrollVal, s.y, paint);
-                    }
-                }
-                // Draws tubes
-                else if (s.isTube())
-                {
-                    // Hacky solution to problem that is not relevant to View
-                    if (s.w == -1)
-                    {
-                        s.w = tubeImg.getWidth();
-                        s.h = tubeImg.getHeight();
-                    }
+            staticLayerDirty = false;
+        }
 
-                    canvas.drawBitmap(tubeImg, s.x - model.scrollVal, s.y, paint);
-                }
-                // Draws goombas
-                else if (s.isGoomba())
-                {
-                    /*
-                    Again, hacky solution like above when drawing tubes.
-                    I didn't want model having a reference to view, so this was
-                    the way I set the widths and heights of certain sprites.
-                     */
-                    if (s.w == -1)
-                    {
-                        s.w = goombaImg.get(0).getWidth();
-                        s.h = goombaImg.get(0).getHeight();
-                    }
+        @Override
+        public void surfaceCreated(SurfaceHolder holder)
+        {
+            synchronized (surfaceLock)
+            {
+                surfaceReady = true;
+            }
 
-                    Goomba goomba = (Goomba)s;
-                    int frame = goomba.dying ? 1 : 0;   // Determines which bitmap to draw
+            if (!assetsReady)
+                drawLoading(holder);
+        }
 
-                    if (s.flip)
-                    {
-                        canvas.drawBitmap(goombaImg_flip.get(frame), s.x - model.scrollVal,
-                                s.y, paint);
-                    }
-                    else
-                    {
-                        canvas.drawBitmap(goombaImg.get(frame), s.x - model.scrollVal,
-                                s.y, paint);
-                    }
-                }
-                // Draws fireballs
-                else if (s.isFireball())
-                {
-                    // Refer to previous hack-jobs
-                    if (s.w == -1)
-                    {
-                        s.w = fireImg.getWidth();
-                        s.h = fireImg.getHeight();
-                    }
+        @Override
+        public void surfaceChanged(SurfaceHolder holder, int format, int width, int height)
+        {
+            // Rebuilt on the render thread before the next frame
+            staticLayerDirty = true;
+        }
 
-                    if (s.flip)
-                    {
-                        canvas.drawBitmap(fireImg_flip, s.x - model.scrollVal,
-                                s.y, paint);
-                    }
-                    else
-                    {
-                        canvas.drawBitmap(fireImg, s.x - model.scrollVal,
-                                s.y, paint);
-                    }
-                }
+        @Override
+        public void surfaceDestroyed(SurfaceHolder holder)
+        {
+            // Waits for a frame being drawn to be posted
+            synchronized (surfaceLock)
+            {
+                surfaceReady = false;
             }
+        }
 
-
-
-            ourHolder.unlockCanvasAndPost(canvas);
+        @Override
+        protected void onConfigurationChanged(Configuration newConfig)
+        {
+            super.onConfigurationChanged(newConfig);
+            staticLayerDirty = true;
         }
 
         // The SurfaceView class (which GameView extends) already
@@ -841,22 +703,86 @@ public class MarioGame extends AppCompatActivity
         @Override
         public boolean onTouchEvent(MotionEvent motionEvent)
         {
+            // Taps with three or more fingers are for comparing drawing
+            // options, acted on once every finger is up so a five finger tap
+            // is not also taken for a three and a four finger tap:
+            // three toggle the timing overlay, four switch between the
+            // hardware and software backends, five toggle the static layer
+            // and six toggle dirty rects (software backend only)
+            switch (motionEvent.getActionMasked())
+            {
+                case MotionEvent.ACTION_DOWN:
+                    tapFingers = 1;
+                    break;
+
+                case MotionEvent.ACTION_POINTER_DOWN:
+                    tapFingers = Math.max(tapFingers, motionEvent.getPointerCount());
+                    break;
+
+                case MotionEvent.ACTION_UP:
+                    if (tapFingers == 3)
+                        showTimings = !showTimings;
+                    else if (tapFingers == 4)
+                        switchBackend = true;
+                    else if (tapFingers == 5)
+                        useStaticLayer = !useStaticLayer;
+                    else if (tapFingers == 6)
+                        useDirtyRects = !useDirtyRects;
+                    break;
+            }
+
             controller.onTouchEvent(motionEvent);
             return true;
         }
     }
 
+    // Runs the simulation on one thread and drawing on another. After each
+    // batch of ticks the simulation thread publishes a RenderSnapshot
+    // through a triple buffer, and the render thread draws the latest one,
+    // so a slow frame never holds up the physics and neither thread waits
+    // for the other.
     static class GameController implements Runnable
     {
         volatile boolean playing;
         Thread gameThread = null;
+        HandlerThread renderThread = null;    // Looper thread the Choreographer calls back on
+
+        // Decides which vsyncs get a frame (render thread only, apart from
+        // the refresh rate set before starting)
+        final FramePacer pacer = new FramePacer(1000000000L / 60);
+        final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback()
+        {
+            @Override
+            public void doFrame(long frameTimeNanos)
+            {
+                onVsync(frameTimeNanos);
+            }
+        };
+        long rateStart;     // Frame rate measurement (render thread only)
+        int frames;
         Model model;
         GameView view;
 
-        float x, y;     // Coordinates of tap events
+        // Snapshots passed from the simulation thread to the render thread
+        final TripleBuffer<RenderSnapshot> snapshots = new TripleBuffer<RenderSnapshot>(
+                new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot());
+        long tick;  // Ticks run so far (simulation thread only)
+
+        // Touch events from the UI thread, drained once per tick
+        final TouchInput touches = new TouchInput(256);
+
+        // Every tick's buttons, saved on pause so the session can be replayed
+        // with InputReplayer (started on the first tick, once the model is set up).
+        // The state is hashed once a second, as hashing walks every sprite.
+        InputLog recording;
+        String levelId = "";
 
-        // Speed at which Mario moves and the screen scrolls
-        final static int speed = 18;
+        // Fixed timestep: 60 ticks a second, at most 5 back to back when catching up
+        final FixedStep clock = new FixedStep(60);
+
+        // Measured rates (updated about once a second)
+        volatile float measuredTickRate;
+        volatile float measuredFrameRate;
 
         GameController(Model m, GameView v)
         {
@@ -864,120 +790,194 @@ public class MarioGame extends AppCompatActivity
             view = v;
             view.setController(this);
             playing = true;
-
-            x = -1f;
-            y = -1f;
         }
 
-        // Uses coordinates from touch event to do things
-        void update()
+        float getMeasuredTickRate()
         {
-            // Tap bottom right corner
-            if (x > view.sWidth * 0.78 && y > view.sHeight / 2)
-            {
-                // Move to right
-                model.mario.x += speed;
-                // Animate Mario
-                model.mario.frame++;
-                model.mario.frame %= 5;
-                // Don't flip Mario
-                model.mario.flip = false;
-
-                // Scroll to right
-                model.scrollVal += speed;
-            }
-            // Tap bottom left corner
-            else if (x < view.sWidth * 0.22 && y > view.sHeight / 2 && x >= 0)
-            {
-                // Move to left
-                model.mario.x -= speed;
-                // Animate Mario
-                model.mario.frame++;
-                model.mario.frame %= 5;
-                // Flip Mario
-                model.mario.flip = true;
-
-                // Scroll to left
-                model.scrollVal -= speed;
-            }
+            return measuredTickRate;
+        }
 
-            // Tap one of the two jump buttons
-            if((x < view.sWidth * 0.11 && y < view.sHeight / 2 && x > 0)
-                    || (x > view.sWidth * 0.89 && y < view.sHeight / 2))
-            {
-                model.mario.jumping = true;
-            }
-            else
-            {
-                model.mario.jumping = false;
-            }
+        float getMeasuredFrameRate()
+        {
+            return measuredFrameRate;
+        }
 
-            // Tap one of the two fireball buttons
-            if (    (x > view.sWidth * 0.11
-                    && x < view.sWidth * 0.22   // Left fire button
-                    && y < view.sHeight / 2)
-                    ||
-                    (x < view.sWidth * 0.89
-                    && x > view.sWidth * 0.78   // Right fire button
-                    && y < view.sHeight / 2))
-            {
-                if (model.mario.fireReady)
-                {
-                    model.mario.fire();
-                    model.mario.fireReady = false;
-                }
-            }
-            else
-            {
-                model.mario.fireReady = true;   // Keeps fireballs semi-automatic
-            }
+        // Turns the touches made before a tick was due into Input buttons
+        int buttons(long dueNanos)
+        {
+            return touches.drain(dueNanos, view.sWidth, view.sHeight);
         }
 
+        // Simulation thread
         @Override
         public void run()
         {
+            long previous = System.nanoTime();
+            clock.start(previous);
+
+            // Rate measurement
+            long rateStart = previous;
+            int ticks = 0;
+
+            // Fingers down when the game paused have lifted since, and
+            // touches made while it was paused belong to no tick
+            touches.clear();
+
+            // Give the renderer something to start from
+            publish(previous);
+
+            if (recording == null)
+                recording = new InputLog(model, levelId, 0, clock.tickRate, clock.tickRate);
+
             while(playing)
             {
-                //long time = System.currentTimeMillis();
-                this.update();
-                model.update();
-                view.update();
+                long now = System.nanoTime();
 
-                try
+                // Run as many fixed ticks as the elapsed time calls for
+                int steps = clock.advance(now);
+                for (int i = 0; i < steps; i++)
                 {
-                    Thread.sleep(10);
+                    long t = System.nanoTime();
+                    int buttons = buttons(clock.due(i));
+                    t = view.timings.end(FrameTimings.INPUT, t);
+                    model.tick(buttons);
+                    view.timings.end(FrameTimings.UPDATE, t);
+                    recording.record(buttons, model);
+                    tick++;
+                    ticks++;
                 }
-                catch(Exception e)
+
+                if (steps > 0)
+                    publish(clock.lastTick());
+
+                // Update measured rate once a second
+                long elapsed = now - rateStart;
+                if (elapsed >= 1000000000L)
                 {
-                    Log.e("Error:", "sleeping");
-                    System.exit(1);
+                    measuredTickRate = ticks * 1e9f / elapsed;
+                    rateStart = now;
+                    ticks = 0;
                 }
+
+                // Sleep until the next tick is due
+                long sleepNanos = clock.sleepNanos(System.nanoTime());
+                if (sleepNanos > 0)
+                {
+                    try
+                    {
+                        Thread.sleep(sleepNanos / 1000000, (int)(sleepNanos % 1000000));
+                    }
+                    catch(Exception e)
+                    {
+                        Log.e("Error:", "sleeping");
+                        System.exit(1);
+                    }
+                }
+            }
+        }
+
+        // Copies the model into the back snapshot and hands it to the renderer
+        void publish(long tickNanos)
+        {
+            RenderSnapshot snap = snapshots.back();
+            view.capture(snap);
+            snap.tick = tick;
+            snap.tickNanos = tickNanos;
+            snapshots.publish();
+        }
+
+        // Render thread: called by the Choreographer at every vsync. Draws
+        // the latest snapshot when the pacer says this vsync gets a frame.
+        void onVsync(long vsyncNanos)
+        {
+            // Stop asking for vsyncs, so the render looper can quit
+            if (!playing)
+                return;
+
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+
+            if (!pacer.onVsync(vsyncNanos))
+                return;
+
+            // Nothing to draw on (surface is being recreated)
+            if (!view.ourHolder.getSurface().isValid())
+                return;
+
+            RenderSnapshot snap = snapshots.latest();
+
+            // Draw this vsync's point between the snapshot's tick and the next
+            long start = System.nanoTime();
+            view.update(snap, clock.alpha(vsyncNanos, snap.tickNanos));
+            long now = System.nanoTime();
+            pacer.frameDone(now - start);
+            frames++;
+
+            long elapsed = now - rateStart;
+            if (elapsed >= 1000000000L)
+            {
+                measuredFrameRate = frames * 1e9f / elapsed;
+                rateStart = now;
+                frames = 0;
             }
         }
 
+        // Queues every finger's touches for the simulation thread. Called on
+        // the UI thread.
         void onTouchEvent(MotionEvent e)
         {
-            switch (e.getAction() & MotionEvent.ACTION_MASK)
+            // Event times are uptime, which runs on the same clock as System.nanoTime()
+            long time = e.getEventTime() * 1000000L;
+            int index = e.getActionIndex();
+
+            switch (e.getActionMasked())
             {
-                case MotionEvent.ACTION_DOWN: // Player touched the screen
-                    x = e.getX();
-                    y = e.getY();
+                case MotionEvent.ACTION_DOWN:           // First finger touched the screen
+                case MotionEvent.ACTION_POINTER_DOWN:   // Another finger touched the screen
+                    touches.add(TouchInput.DOWN, e.getPointerId(index),
+                            e.getX(index), e.getY(index), time);
+                    break;
+
+                case MotionEvent.ACTION_MOVE:   // Any finger moved
+                    for (int i = 0; i < e.getPointerCount(); i++)
+                    {
+                        touches.add(TouchInput.MOVE, e.getPointerId(i), e.getX(i), e.getY(i), time);
+                    }
+                    break;
+
+                case MotionEvent.ACTION_UP:             // Last finger withdrawn
+                case MotionEvent.ACTION_POINTER_UP:     // One finger withdrawn
+                    touches.add(TouchInput.UP, e.getPointerId(index),
+                            e.getX(index), e.getY(index), time);
                     break;
 
-                case MotionEvent.ACTION_UP: // Player withdrew finger
-                    x = -1f;
-                    y = -1f;
+                case MotionEvent.ACTION_CANCEL: // Gesture taken away, so lift every finger
+                    for (int i = 0; i < e.getPointerCount(); i++)
+                    {
+                        touches.add(TouchInput.UP, e.getPointerId(i), -1f, -1f, time);
+                    }
                     break;
             }
         }
 
-        // Shut down the game thread.
+        // Shut down the game and render threads.
         public void pause()
         {
             playing = false;
+
+            // Never started (assets were still loading)
+            if (gameThread == null)
+                return;
+
             try
             {
                 gameThread.join();
+                renderThread.quit();    // Drops the pending vsync callback
+                renderThread.join();
+                gameThread = null;
+                renderThread = null;
+
+                view.dumpTimings();
+                saveRecording();
             }
             catch (InterruptedException e)
             {
@@ -987,12 +987,45 @@ public class MarioGame extends AppCompatActivity
 
         }
 
-        // Restart the game thread.
+        // Writes the session so far to last_session.inp. Only call while the
+        // game thread is stopped.
+        void saveRecording()
+        {
+            if (recording == null)
+                return;
+
+            try
+            {
+                recording.write(new File(view.getContext().getFilesDir(), "last_session.inp"));
+            }
+            catch (IOException e)
+            {
+                // Losing the recording is no reason to stop the game
+                Log.e("Error:", "writing input log", e);
+            }
+        }
+
+        // Restart the game and render threads.
         public void resume()
         {
             playing = true;
-            gameThread = new Thread(this);
+            gameThread = new Thread(this, "Simulation");
+            renderThread = new HandlerThread("Render");
+
             gameThread.start();
+            renderThread.start();
+
+            // Frames are drawn at vsync from now on; see onVsync()
+            new Handler(renderThread.getLooper()).post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    rateStart = System.nanoTime();
+                    frames = 0;
+                    Choreographer.getInstance().postFrameCallback(frameCallback);
+                }
+            });
         }
     }
 }
\ No newline at end of file
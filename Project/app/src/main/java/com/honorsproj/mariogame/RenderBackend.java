@@ -0,0 +1,52 @@
+package com.honorsproj.mariogame;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.SurfaceHolder;
+
+// How GameView gets a canvas to draw a frame on and hands it back. The
+// hardware backend draws with the GPU where the device supports it; the
+// software backend is the plain SurfaceHolder canvas every device has.
+abstract class RenderBackend
+{
+    // Kinds, for telling frame times apart
+    final static int SOFTWARE = 0;
+    final static int HARDWARE = 1;
+    final static String[] names = { "software", "hardware" };
+
+    final SurfaceHolder holder;
+
+    RenderBackend(SurfaceHolder holder)
+    {
+        this.holder = holder;
+    }
+
+    abstract int kind();
+
+    // True if pixels outside the rectangle passed to lock() are kept from
+    // the last frame, so only the rectangle needs repainting
+    abstract boolean keepsContents();
+
+    // Locks the surface for a frame, or just the dirty part of it if dirty
+    // is not null (the rectangle may be grown to what was really locked).
+    // Returns null if the surface is not ready.
+    abstract Canvas lock(Rect dirty);
+
+    // Shows the frame drawn on a canvas from lock()
+    abstract void post(Canvas c);
+
+    String name()
+    {
+        return names[kind()];
+    }
+
+    // The fastest backend this device supports
+    static RenderBackend create(SurfaceHolder holder)
+    {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)
+            return new HardwareBackend(holder);
+
+        return new SoftwareBackend(holder);
+    }
+}
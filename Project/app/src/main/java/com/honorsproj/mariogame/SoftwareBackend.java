@@ -0,0 +1,39 @@
+package com.honorsproj.mariogame;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.SurfaceHolder;
+
+// Draws on the CPU through SurfaceHolder.lockCanvas(). Works on every API
+// level and keeps the last frame outside the locked rectangle.
+class SoftwareBackend extends RenderBackend
+{
+    SoftwareBackend(SurfaceHolder holder)
+    {
+        super(holder);
+    }
+
+    @Override
+    int kind()
+    {
+        return SOFTWARE;
+    }
+
+    @Override
+    boolean keepsContents()
+    {
+        return true;
+    }
+
+    @Override
+    Canvas lock(Rect dirty)
+    {
+        return dirty == null ? holder.lockCanvas() : holder.lockCanvas(dirty);
+    }
+
+    @Override
+    void post(Canvas c)
+    {
+        holder.unlockCanvasAndPost(c);
+    }
+}
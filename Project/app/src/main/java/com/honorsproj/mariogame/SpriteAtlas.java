@@ -0,0 +1,156 @@
+package com.honorsproj.mariogame;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+// All of the game's images packed into one bitmap. Each frame is found by
+// its id in a table of source rectangles, so drawing any frame copies from
+// the same bitmap.
+class SpriteAtlas
+{
+    // Frame ids
+    final static int MARIO = 0;         // 5 walking frames
+    final static int MARIO_FLIP = 5;    // 5 walking frames facing left
+    final static int GOOMBA = 10;
+    final static int GOOMBA_DYING = 11;
+    final static int GOOMBA_FLIP = 12;
+    final static int GOOMBA_DYING_FLIP = 13;
+    final static int FIREBALL = 14;
+    final static int FIREBALL_FLIP = 15;
+    final static int TUBE = 16;
+    final static int GROUND = 17;
+    final static int MOVE_RIGHT = 18;
+    final static int MOVE_LEFT = 19;
+    final static int JUMP_BUTTON = 20;
+    final static int FIRE_BUTTON = 21;
+    final static int FRAME_COUNT = 22;
+
+    final Bitmap bitmap;
+    final Rect[] frames;    // Source rectangle of each frame
+    final RectF dst = new RectF();  // Reused when drawing
+
+    SpriteAtlas(Bitmap bitmap, Rect[] frames)
+    {
+        this.bitmap = bitmap;
+        this.frames = frames;
+    }
+
+    int width(int id)
+    {
+        return frames[id].width();
+    }
+
+    int height(int id)
+    {
+        return frames[id].height();
+    }
+
+    // Memory used by every image in the game
+    int byteCount()
+    {
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    // Draws a frame at its own size
+    void draw(Canvas c, int id, float left, float top, Paint paint)
+    {
+        Rect src = frames[id];
+        dst.set(left, top, left + src.width(), top + src.height());
+        c.drawBitmap(bitmap, src, dst, paint);
+    }
+
+    // Draws a frame stretched to w by h
+    void draw(Canvas c, int id, float left, float top, float w, float h, Paint paint)
+    {
+        dst.set(left, top, left + w, top + h);
+        c.drawBitmap(bitmap, frames[id], dst, paint);
+    }
+
+    // Collects images by frame id and packs them into an atlas
+    static class Builder
+    {
+        final static int maxWidth = 2048;
+        final static int padding = 1;   // Gap between frames
+
+        final Bitmap[] images;
+
+        Builder(int frameCount)
+        {
+            images = new Bitmap[frameCount];
+        }
+
+        void add(int id, Bitmap image)
+        {
+            images[id] = image;
+        }
+
+        // Packs the images into rows (tallest first) and frees them
+        SpriteAtlas build()
+        {
+            int n = images.length;
+
+            // Frame ids sorted by height, tallest first
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++)
+            {
+                int j = i - 1;
+                while (j >= 0 && images[order[j]].getHeight() < images[i].getHeight())
+                {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = i;
+            }
+
+            int rowWidth = maxWidth;
+            for (int i = 0; i < n; i++)
+            {
+                rowWidth = Math.max(rowWidth, images[i].getWidth());
+            }
+
+            // Lay frames out left to right, starting a new row when one is full
+            Rect[] frames = new Rect[n];
+            int x = 0, y = 0;
+            int rowHeight = 0;
+            int width = 0;
+
+            for (int k = 0; k < n; k++)
+            {
+                Bitmap image = images[order[k]];
+
+                if (x + image.getWidth() > rowWidth)
+                {
+                    x = 0;
+                    y += rowHeight + padding;
+                    rowHeight = 0;
+                }
+
+                frames[order[k]] = new Rect(x, y, x + image.getWidth(), y + image.getHeight());
+
+                x += image.getWidth() + padding;
+                rowHeight = Math.max(rowHeight, image.getHeight());
+                width = Math.max(width, x);
+            }
+
+            Bitmap bitmap = Bitmap.createBitmap(width, y + rowHeight, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+
+            for (int i = 0; i < n; i++)
+            {
+                // Explicit destination, so bitmap density never rescales a frame
+                canvas.drawBitmap(images[i], null, frames[i], null);
+            }
+
+            for (int i = 0; i < n; i++)
+            {
+                images[i].recycle();
+                images[i] = null;
+            }
+
+            return new SpriteAtlas(bitmap, frames);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.honorsproj.mariogame.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Sprite.collidesWith() and Mario.fixCollision() on their own
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CollisionBenchmark
+{
+    @Param({"10", "100", "1000", "10000", "100000"})
+    int count;
+
+    Model model;
+    ArrayList<Sprite> sprites;
+    Mario mario;
+    Tube tube;
+    int scrollVal;
+
+    @Setup
+    public void setUp()
+    {
+        model = Worlds.crowded(count);
+        sprites = model.sprites;
+        mario = model.mario;
+        tube = new Tube(model, 1000, 600);
+        scrollVal = model.scrollVal;
+    }
+
+    // fixCollision() pushes Mario and the view back, so every call starts
+    // from the same place
+    @Setup(Level.Invocation)
+    public void walkIntoTube()
+    {
+        model.scrollVal = scrollVal;
+        mario.prevX = tube.x - mario.w - 10;
+        mario.prevY = tube.y;
+        mario.x = tube.x - mario.w + 5;
+        mario.y = tube.y + 10;
+    }
+
+    // One sprite checked against every sprite in the level, like the old scan
+    @Benchmark
+    public int collidesWith()
+    {
+        int hits = 0;
+
+        for (int i = 0; i < sprites.size(); i++)
+        {
+            if (mario.collidesWith(sprites.get(i)))
+                hits++;
+        }
+
+        return hits;
+    }
+
+    // Mario walking into the side of a tube
+    @Benchmark
+    public int fixCollision()
+    {
+        mario.fixCollision(tube);
+        return mario.x;
+    }
+}
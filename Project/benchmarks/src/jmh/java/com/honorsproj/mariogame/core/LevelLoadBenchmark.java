@@ -0,0 +1,61 @@
+package com.honorsproj.mariogame.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Mapping a level file and loading it into a streaming Model, for levels
+// of a few thousand to a million records (about 9 MB)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LevelLoadBenchmark
+{
+    @Param({"1000", "100000", "1000000"})
+    int count;
+
+    File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        int[] types = new int[count];
+        int[] xs = new int[count];
+        int[] ys = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            types[i] = i % 3 == 0 ? Sprite.TUBE : Sprite.GOOMBA;
+            xs[i] = i * 40;
+            ys[i] = 500;
+        }
+
+        file = File.createTempFile("level", ".lvl");
+        LevelConverter.write(types, xs, ys, count, file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Benchmark
+    public Model load() throws IOException
+    {
+        Model model = HeadlessDriver.createModel();
+        model.useStreaming(2048);
+        LevelFile.map(file).addTo(model);
+        return model;
+    }
+}
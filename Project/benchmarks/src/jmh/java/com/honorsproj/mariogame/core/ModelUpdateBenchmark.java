@@ -0,0 +1,52 @@
+package com.honorsproj.mariogame.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of Model.update() as the level grows
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ModelUpdateBenchmark
+{
+    @Param({"10", "100", "1000", "10000", "100000"})
+    int count;
+
+    // "bruteForce" (the old full scan) can be added here too, but it takes
+    // minutes per iteration past 10k sprites
+    @Param({"broadphase", "entityStore", "parallel"})
+    String mode;
+
+    Model model;
+
+    // Fresh level every iteration, since goombas and fireballs kill each other off
+    @Setup(Level.Iteration)
+    public void setUp()
+    {
+        model = Worlds.crowded(count);
+        Worlds.setMode(model, mode);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown()
+    {
+        model.useParallelUpdate(1);
+    }
+
+    @Benchmark
+    public Model update()
+    {
+        model.update();
+        return model;
+    }
+}
@@ -0,0 +1,73 @@
+package com.honorsproj.mariogame.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of an EntityStore update split across threads. Before measuring,
+// each trial checks the split update still gives the same game as the
+// serial one, so a speedup never comes from doing something different.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelUpdateBenchmark
+{
+    @Param({"10000", "100000"})
+    int count;
+
+    @Param({"1", "2", "4"})
+    int threads;
+
+    Model model;
+
+    @Setup(Level.Trial)
+    public void checkSameAsSerial()
+    {
+        Model serial = Worlds.crowded(count);
+        serial.useEntityStore(true);
+        Model parallel = Worlds.crowded(count);
+        parallel.useParallelUpdate(threads);
+
+        for (int tick = 0; tick < 3; tick++)
+        {
+            serial.update();
+            parallel.update();
+
+            if (serial.stateHash() != parallel.stateHash())
+                throw new IllegalStateException("Parallel update diverged from serial on tick " + tick);
+        }
+
+        parallel.useParallelUpdate(1);
+    }
+
+    // Fresh level every iteration, since goombas and fireballs kill each other off
+    @Setup(Level.Iteration)
+    public void setUp()
+    {
+        model = Worlds.crowded(count);
+        model.useEntityStore(true);
+        model.useParallelUpdate(threads);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown()
+    {
+        model.useParallelUpdate(1);
+    }
+
+    @Benchmark
+    public Model update()
+    {
+        model.update();
+        return model;
+    }
+}
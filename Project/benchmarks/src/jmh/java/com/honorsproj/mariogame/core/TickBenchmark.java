@@ -0,0 +1,67 @@
+package com.honorsproj.mariogame.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// A whole game tick the way GameController runs it: the current touch is
+// turned into buttons, then Model.tick() applies them and updates everything
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TickBenchmark
+{
+    @Param({"10", "100", "1000", "10000", "100000"})
+    int count;
+
+    // Touches cycled through, one per tick: walk right, fire, jump, let go
+    final static float[][] touches = {
+            {1800, 900}, {1600, 100}, {1800, 900}, {1850, 100}, {-1, -1}
+    };
+
+    // Fire and let go, standing still, so fireballs keep coming out of the
+    // pool and going back (run with the GC profiler to see it allocates nothing)
+    final static float[][] firing = {
+            {1600, 100}, {-1, -1}
+    };
+
+    Model model;
+    int tick;
+
+    @Setup(Level.Iteration)
+    public void setUp()
+    {
+        model = Worlds.crowded(count);
+        tick = 0;
+    }
+
+    @Benchmark
+    public Model tick()
+    {
+        return step(touches);
+    }
+
+    @Benchmark
+    public Model firing()
+    {
+        return step(firing);
+    }
+
+    Model step(float[][] cycle)
+    {
+        float[] touch = cycle[tick++ % cycle.length];
+        int buttons = TouchLayout.buttonsAt(touch[0], touch[1],
+                HeadlessDriver.screenWidth, HeadlessDriver.screenHeight);
+
+        model.tick(buttons);
+        return model;
+    }
+}
@@ -0,0 +1,55 @@
+package com.honorsproj.mariogame.core;
+
+import java.util.Random;
+
+// Builds levels of a given size for the benchmarks. Density stays the same
+// as the level grows, so per-sprite cost is comparable across sizes.
+final class Worlds
+{
+    final static int spacing = 40;  // Level width per sprite, in pixels
+
+    private Worlds()
+    {
+    }
+
+    // Roughly half goombas, three tenths fireballs and a fifth tubes
+    static Model crowded(int count)
+    {
+        Random random = new Random(count);
+        Model model = HeadlessDriver.createModel();
+        int width = count * spacing;
+
+        // Keep the fireballs from being removed for leaving the screen
+        model.viewWidth = width + 2 * HeadlessDriver.screenWidth;
+        model.scrollVal = -HeadlessDriver.screenWidth;
+
+        for (int i = 0; i < Math.max(count / 5, 1); i++)
+        {
+            model.addSprite(new Tube(model, random.nextInt(width), 600 + random.nextInt(300)));
+        }
+
+        for (int i = 0; i < Math.max(count / 2, 1); i++)
+        {
+            model.addSprite(new Goomba(model, random.nextInt(width), random.nextInt(900)));
+        }
+
+        for (int i = 0; i < Math.max(count * 3 / 10, 1); i++)
+        {
+            model.addSprite(new Fireball(model, random.nextInt(width), random.nextInt(900),
+                    random.nextBoolean()));
+        }
+
+        return model;
+    }
+
+    // Switches a model to one of the update modes being compared
+    static void setMode(Model model, String mode)
+    {
+        if (mode.equals("bruteForce"))
+            model.useBroadphase = false;
+        else if (mode.equals("entityStore"))
+            model.useEntityStore(true);
+        else if (mode.equals("parallel"))
+            model.useParallelUpdate(Math.max(Runtime.getRuntime().availableProcessors(), 2));
+    }
+}
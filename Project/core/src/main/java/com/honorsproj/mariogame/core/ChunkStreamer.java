@@ -0,0 +1,410 @@
+package com.honorsproj.mariogame.core;
+
+import java.util.ArrayList;
+
+// Splits the level into fixed-width chunks along x and keeps only the
+// chunks near the screen in the game. Tubes and goombas in chunks further
+// away are taken out of Model.sprites and frozen as they are; chunks further
+// still are packed into plain int records and their sprites dropped. Either
+// way nothing is lost, so walking back brings them back exactly as they were.
+// Per-tick work and live objects depend on the screen size, not the level.
+public class ChunkStreamer
+{
+    // Packed record layout
+    final static int STRIDE = 8;
+    final static int TYPE = 0, X = 1, Y = 2, SUB_Y = 3, FLIP = 4, DYING = 5, TIMER = 6, VEL_Y = 7;
+
+    static class Chunk
+    {
+        final int index;
+        boolean active;
+        final ArrayList<Sprite> frozen = new ArrayList<Sprite>();   // Sprites kept as objects
+        int[] packed = new int[0];  // Sprites kept as records
+        int packedCount;
+        boolean listed;     // In frozenChunks
+
+        Chunk(int index)
+        {
+            this.index = index;
+        }
+    }
+
+    final Model model;
+    final int chunkWidth;
+    public int activeMargin;    // Distance past the screen edges that stays active
+    public int packDistance;    // Chunks this far from the active ones get packed
+
+    // Chunk i is at chunks[i - firstIndex] (null if nothing has asked for it)
+    Chunk[] chunks = new Chunk[16];
+    int firstIndex;
+
+    int activeFirst, activeLast;    // Range of active chunks
+    boolean started;
+    Chunk lastChunk;    // Last chunk looked up
+
+    // Inactive chunks that have had sprites frozen into them since they were
+    // last packed, so packing only looks at chunks near the active ones
+    final ArrayList<Chunk> frozenList = new ArrayList<Chunk>();
+
+    // Stats, kept up to date as chunks change
+    public int activeChunks;
+    public int frozenChunks;    // Inactive chunks holding sprite objects
+    public int packedChunks;    // Inactive chunks holding only records
+
+    ChunkStreamer(Model model, int chunkWidth)
+    {
+        this.model = model;
+        this.chunkWidth = chunkWidth;
+        activeMargin = chunkWidth / 2;
+        packDistance = 2;
+    }
+
+    int chunkOf(int x)
+    {
+        // Rounds down for negative x too
+        return x >= 0 ? x / chunkWidth : (x + 1) / chunkWidth - 1;
+    }
+
+    Chunk chunk(int index)
+    {
+        // Level files are sorted by x, so loading asks for the same chunk over and over
+        if (lastChunk != null && lastChunk.index == index)
+            return lastChunk;
+
+        if (index < firstIndex || index >= firstIndex + chunks.length)
+            grow(index);
+
+        Chunk c = chunks[index - firstIndex];
+
+        if (c == null)
+        {
+            c = new Chunk(index);
+            chunks[index - firstIndex] = c;
+        }
+
+        lastChunk = c;
+        return c;
+    }
+
+    // Makes room for chunk index, at least doubling the array towards it
+    void grow(int index)
+    {
+        int from = Math.min(firstIndex, index);
+        int to = Math.max(firstIndex + chunks.length, index + 1);
+        int length = Math.max(to - from, chunks.length * 2);
+        int first = index < firstIndex ? to - length : from;
+
+        Chunk[] bigger = new Chunk[length];
+        System.arraycopy(chunks, 0, bigger, firstIndex - first, chunks.length);
+        chunks = bigger;
+        firstIndex = first;
+    }
+
+    // Adds (delta 1) or takes away (delta -1) a chunk from the stats for
+    // what it holds now. Called either side of every change to a chunk.
+    void count(Chunk c, int delta)
+    {
+        if (c.active)
+            activeChunks += delta;
+        else if (!c.frozen.isEmpty())
+            frozenChunks += delta;
+        else if (c.packedCount > 0)
+            packedChunks += delta;
+    }
+
+    // Moves every tube and goomba out of the game into its chunk
+    void takeAll()
+    {
+        ArrayList<Sprite> sprites = model.sprites;
+
+        // Backwards, as removing moves the last sprite into the gap
+        for (int i = sprites.size() - 1; i >= 0; i--)
+        {
+            Sprite s = sprites.get(i);
+
+            if (streamed(s))
+            {
+                Chunk c = chunk(chunkOf(s.x));
+                count(c, -1);
+                pack(c, s);
+                count(c, 1);
+                model.lifecycle.remove(s);
+            }
+        }
+    }
+
+    // Adds a tube to its chunk. Only makes a sprite for it if the chunk is in play.
+    public void addTube(int x, int y)
+    {
+        Chunk c = chunk(chunkOf(x));
+
+        if (c.active)
+        {
+            model.addSprite(new Tube(model, x, y));
+        }
+        else
+        {
+            count(c, -1);
+            addRecord(c, Sprite.TUBE, x, y, 0, false, false, 0, 0);
+            count(c, 1);
+            model.tubeIndex = null;
+        }
+    }
+
+    // Adds a goomba to its chunk. Only makes a sprite for it if the chunk is in play.
+    public void addGoomba(int x, int y)
+    {
+        Chunk c = chunk(chunkOf(x));
+
+        if (c.active)
+        {
+            model.addSprite(new Goomba(model, x, y));
+        }
+        else
+        {
+            count(c, -1);
+            addRecord(c, Sprite.GOOMBA, x, y, 0, false, false, 8, 0);
+            count(c, 1);
+        }
+    }
+
+    // Only tubes and goombas are streamed. Mario is always in the game and
+    // fireballs are removed once they leave the screen anyway.
+    static boolean streamed(Sprite s)
+    {
+        return s.isTube() || s.isGoomba();
+    }
+
+    // Brings chunks near the screen into the game and takes far ones out.
+    // Called at the start of every tick.
+    void update()
+    {
+        int first = chunkOf(model.scrollVal - activeMargin);
+        int last = chunkOf(model.scrollVal + model.viewWidth + activeMargin);
+
+        if (!started || first != activeFirst || last != activeLast)
+        {
+            // Deactivate chunks that fell out of range
+            if (started)
+            {
+                for (int i = activeFirst; i <= activeLast; i++)
+                {
+                    if (i < first || i > last)
+                    {
+                        Chunk c = chunk(i);
+                        count(c, -1);
+                        c.active = false;
+                        count(c, 1);
+                    }
+                }
+            }
+
+            // Activate chunks that came into range
+            for (int i = first; i <= last; i++)
+            {
+                Chunk c = chunk(i);
+
+                if (!c.active)
+                    activate(c);
+            }
+
+            activeFirst = first;
+            activeLast = last;
+            started = true;
+
+            packDistant();
+        }
+
+        freezeStragglers();
+    }
+
+    // Puts a chunk's sprites back into the game
+    void activate(Chunk c)
+    {
+        count(c, -1);
+        c.active = true;
+
+        for (int i = 0; i < c.frozen.size(); i++)
+        {
+            bringBack(c.frozen.get(i));
+        }
+        c.frozen.clear();
+
+        for (int i = 0; i < c.packedCount; i++)
+        {
+            bringBack(unpack(c.packed, i * STRIDE));
+        }
+        c.packedCount = 0;
+        count(c, 1);
+    }
+
+    void bringBack(Sprite s)
+    {
+        // Nothing to interpolate from, so it has not moved since last tick
+        s.lastX = s.x;
+        s.lastY = s.y;
+        // Tubes coming back are already in the tube index
+        model.lifecycle.spawn(s);
+    }
+
+    // Freezes any tube or goomba that is in the game but not in an active
+    // chunk (because its chunk was deactivated or it walked out of range)
+    void freezeStragglers()
+    {
+        ArrayList<Sprite> sprites = model.sprites;
+
+        // Backwards, as removing moves the last sprite into the gap
+        for (int i = sprites.size() - 1; i >= 0; i--)
+        {
+            Sprite s = sprites.get(i);
+
+            if (!streamed(s) || s.kill)
+                continue;
+
+            int index = chunkOf(s.x);
+
+            if (index < activeFirst || index > activeLast)
+            {
+                Chunk c = chunk(index);
+                count(c, -1);
+                c.frozen.add(s);
+                count(c, 1);
+                model.lifecycle.remove(s);
+
+                if (!c.listed)
+                {
+                    c.listed = true;
+                    frozenList.add(c);
+                }
+            }
+        }
+    }
+
+    // Packs frozen chunks that are now far from the active ones. Only
+    // chunks in frozenList can hold frozen sprites, and they are dropped
+    // from it once packed or active again, so this never walks the level.
+    void packDistant()
+    {
+        // Backwards, as removing moves the last chunk into the gap
+        for (int i = frozenList.size() - 1; i >= 0; i--)
+        {
+            Chunk c = frozenList.get(i);
+
+            if (!c.active && !c.frozen.isEmpty()
+                    && c.index >= activeFirst - packDistance
+                    && c.index <= activeLast + packDistance)
+                continue;
+
+            if (!c.active)
+            {
+                count(c, -1);
+                for (int j = 0; j < c.frozen.size(); j++)
+                {
+                    pack(c, c.frozen.get(j));
+                }
+                c.frozen.clear();
+                count(c, 1);
+            }
+
+            c.listed = false;
+            frozenList.set(i, frozenList.get(frozenList.size() - 1));
+            frozenList.remove(frozenList.size() - 1);
+        }
+    }
+
+    void pack(Chunk c, Sprite s)
+    {
+        if (s.isTube())
+        {
+            addRecord(c, Sprite.TUBE, s.x, s.y, 0, false, false, 0, 0);
+        }
+        else
+        {
+            Goomba g = (Goomba)s;
+            addRecord(c, Sprite.GOOMBA, g.x, g.y, g.subY, g.flip, g.dying, g.deathTimer, g.velY);
+        }
+    }
+
+    static void addRecord(Chunk c, int type, int x, int y, int subY, boolean flip,
+                          boolean dying, int timer, int velY)
+    {
+        int at = c.packedCount * STRIDE;
+
+        if (at + STRIDE > c.packed.length)
+        {
+            int[] bigger = new int[Math.max(c.packed.length * 2, STRIDE * 8)];
+            System.arraycopy(c.packed, 0, bigger, 0, at);
+            c.packed = bigger;
+        }
+
+        c.packed[at + TYPE] = type;
+        c.packed[at + X] = x;
+        c.packed[at + Y] = y;
+        c.packed[at + SUB_Y] = subY;
+        c.packed[at + FLIP] = flip ? 1 : 0;
+        c.packed[at + DYING] = dying ? 1 : 0;
+        c.packed[at + TIMER] = timer;
+        c.packed[at + VEL_Y] = velY;
+        c.packedCount++;
+    }
+
+    Sprite unpack(int[] packed, int at)
+    {
+        if (packed[at + TYPE] == Sprite.TUBE)
+            return new Tube(model, packed[at + X], packed[at + Y]);
+
+        Goomba g = new Goomba(model, packed[at + X], packed[at + Y]);
+        g.flip = packed[at + FLIP] != 0;
+        g.dying = packed[at + DYING] != 0;
+        g.deathTimer = packed[at + TIMER];
+        g.subY = packed[at + SUB_Y];
+        g.velY = packed[at + VEL_Y];
+        return g;
+    }
+
+    // Adds the tubes that are out of the game to a tube index
+    void addTubes(TubeIndex.Builder builder)
+    {
+        for (int k = 0; k < chunks.length; k++)
+        {
+            Chunk c = chunks[k];
+            if (c == null)
+                continue;
+
+            for (int i = 0; i < c.frozen.size(); i++)
+            {
+                Sprite s = c.frozen.get(i);
+                if (s.isTube())
+                    builder.add(s.x, s.y, s.w, s.h);
+            }
+
+            for (int i = 0; i < c.packedCount; i++)
+            {
+                int at = i * STRIDE;
+                if (c.packed[at + TYPE] == Sprite.TUBE)
+                    builder.add(c.packed[at + X], c.packed[at + Y],
+                            model.sizes.tubeW, model.sizes.tubeH);
+            }
+        }
+    }
+
+    // Tubes and goombas in the level, in the game or not
+    public int totalSprites()
+    {
+        int total = 0;
+
+        for (int k = 0; k < chunks.length; k++)
+        {
+            if (chunks[k] != null)
+                total += chunks[k].frozen.size() + chunks[k].packedCount;
+        }
+
+        for (int i = 0; i < model.sprites.size(); i++)
+        {
+            if (streamed(model.sprites.get(i)))
+                total++;
+        }
+
+        return total;
+    }
+}
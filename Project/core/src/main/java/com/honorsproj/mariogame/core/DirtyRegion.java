@@ -0,0 +1,136 @@
+package com.honorsproj.mariogame.core;
+
+// Works out how much of the screen a frame has to repaint. Each frame adds
+// the screen bounds of every sprite it draws; the region is the union of
+// those and the bounds the same sprites were drawn at last frame (which
+// now need the background drawn over them). When the view scrolls every
+// pixel moves, so the whole screen is repainted.
+//
+// Call begin(), add() every sprite, lock the region's rectangle, then
+// end() with the rectangle that was actually locked (the surface may grow
+// it, for instance to the whole screen for a new buffer).
+public class DirtyRegion
+{
+    // Union for the current frame, in screen pixels (empty when left >= right)
+    public int left, top, right, bottom;
+
+    int width, height;  // Screen size
+    float lastScroll = Float.NaN;
+    boolean full;
+
+    // Bounds drawn last frame and this frame, four ints per rectangle
+    int[] last = new int[256];
+    int lastCount;
+    int[] current = new int[256];
+    int currentCount;
+
+    // Stats
+    public long area;               // Pixels repainted last frame
+    public float averageFraction;   // Running average of area over screen size
+
+    // Starts a frame on a width x height screen scrolled to scroll
+    public void begin(int width, int height, float scroll)
+    {
+        full = width != this.width || height != this.height || scroll != lastScroll;
+        this.width = width;
+        this.height = height;
+        lastScroll = scroll;
+
+        left = top = Integer.MAX_VALUE;
+        right = bottom = Integer.MIN_VALUE;
+        currentCount = 0;
+
+        if (full)
+        {
+            setFull();
+            return;
+        }
+
+        for (int i = 0; i < lastCount * 4; i += 4)
+        {
+            union(last[i], last[i + 1], last[i + 2], last[i + 3]);
+        }
+    }
+
+    // Makes the whole screen dirty (static layer redrawn, overlay shown)
+    public void invalidateAll()
+    {
+        full = true;
+        setFull();
+    }
+
+    void setFull()
+    {
+        left = 0;
+        top = 0;
+        right = width;
+        bottom = height;
+    }
+
+    public boolean isFull()
+    {
+        return full;
+    }
+
+    public boolean isEmpty()
+    {
+        return left >= right || top >= bottom;
+    }
+
+    // Adds a sprite drawn at (x, y) w x h pixels this frame. Rounds outwards,
+    // since a bitmap drawn at a fractional position touches the partly
+    // covered pixels too.
+    public void add(float x, float y, int w, int h)
+    {
+        int x0 = (int)Math.floor(x);
+        int y0 = (int)Math.floor(y);
+        int x1 = (int)Math.ceil(x + w);
+        int y1 = (int)Math.ceil(y + h);
+
+        // Off screen, so nothing to repaint now or next frame
+        if (x1 <= 0 || y1 <= 0 || x0 >= width || y0 >= height)
+            return;
+
+        if (currentCount * 4 == current.length)
+        {
+            int[] bigger = new int[current.length * 2];
+            System.arraycopy(current, 0, bigger, 0, current.length);
+            current = bigger;
+        }
+
+        int at = currentCount * 4;
+        current[at] = x0;
+        current[at + 1] = y0;
+        current[at + 2] = x1;
+        current[at + 3] = y1;
+        currentCount++;
+
+        if (!full)
+            union(x0, y0, x1, y1);
+    }
+
+    // Grows the region to take in a rectangle, clipped to the screen
+    void union(int x0, int y0, int x1, int y1)
+    {
+        left = Math.min(left, Math.max(x0, 0));
+        top = Math.min(top, Math.max(y0, 0));
+        right = Math.max(right, Math.min(x1, width));
+        bottom = Math.max(bottom, Math.min(y1, height));
+    }
+
+    // Finishes the frame. The rectangle is what was actually repainted.
+    public void end(int lockedLeft, int lockedTop, int lockedRight, int lockedBottom)
+    {
+        area = (long)Math.max(lockedRight - lockedLeft, 0) * Math.max(lockedBottom - lockedTop, 0);
+
+        long screen = (long)width * height;
+        float fraction = screen > 0 ? (float)area / screen : 0;
+        averageFraction += (fraction - averageFraction) * 0.05f;
+
+        // This frame's bounds are next frame's to erase
+        int[] swap = last;
+        last = current;
+        lastCount = currentCount;
+        current = swap;
+    }
+}
@@ -0,0 +1,215 @@
+package com.honorsproj.mariogame.core;
+
+import java.util.ArrayList;
+
+// Decides when sprites enter and leave Model.sprites. Every sprite in the
+// game gets a handle made of a slot number and that slot's generation; the
+// generation goes up whenever the slot is freed, so a handle kept after its
+// sprite is gone (or reused from the fireball pool) just stops resolving.
+//
+// While the Model is updating, spawns and despawns are queued and applied
+// together once the update pass is over, so iterating the sprite list is
+// always safe. Each sprite knows its place in the list and is removed by
+// moving the last sprite into its place, so despawning k sprites costs
+// O(k) however many are in the game.
+public class EntityManager
+{
+    final static int SLOT_BITS = 20;
+    final static int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    final static int GENERATION_MASK = (1 << (32 - SLOT_BITS)) - 1;
+
+    final Model model;
+    final ArrayList<Sprite> sprites;
+
+    Sprite[] slots = new Sprite[64];
+    int[] generations = new int[64];
+    int[] free = new int[64];   // Slots that can be reused
+    int freeCount;
+    int slotCount;  // Slots ever handed out
+
+    boolean deferring;  // True while the Model is updating
+    final ArrayList<Sprite> spawns = new ArrayList<Sprite>();
+    final ArrayList<Sprite> despawns = new ArrayList<Sprite>();
+
+    // Stats for the last flush
+    public int spawned;
+    public int despawned;
+
+    EntityManager(Model model)
+    {
+        this.model = model;
+        sprites = model.sprites;
+    }
+
+    // Puts a sprite in the game, or queues it if the Model is updating.
+    // Returns its handle either way.
+    int spawn(Sprite s)
+    {
+        int slot;
+        if (freeCount > 0)
+        {
+            slot = free[--freeCount];
+        }
+        else
+        {
+            if (slotCount == slots.length)
+                grow();
+            slot = slotCount++;
+            generations[slot] = 1;    // Handle 0 is never valid
+        }
+
+        slots[slot] = s;
+        s.handle = (generations[slot] << SLOT_BITS) | slot;
+        s.despawning = false;
+        s.index = -1;
+
+        if (deferring)
+        {
+            s.spawning = true;
+            spawns.add(s);
+        }
+        else
+        {
+            add(s);
+        }
+
+        return s.handle;
+    }
+
+    // Marks a sprite to leave the game at the end of the update pass.
+    // Safe to call more than once.
+    void despawn(Sprite s)
+    {
+        s.kill = true;
+
+        if (s.despawning)
+            return;
+
+        s.despawning = true;
+        despawns.add(s);
+
+        if (!deferring)
+            flush();
+    }
+
+    // Takes a sprite out of the game straight away without despawning it
+    // (ChunkStreamer freezing it). Not to be used while the Model is updating.
+    void remove(Sprite s)
+    {
+        model.forget(s);
+        unlist(s);
+        freeSlot(s);
+    }
+
+    // Returns the sprite a handle refers to, or null if it has left the game
+    public Sprite get(int handle)
+    {
+        int slot = handle & SLOT_MASK;
+
+        if (slot >= slotCount || generations[slot] != handle >>> SLOT_BITS)
+            return null;
+
+        return slots[slot];
+    }
+
+    // Applies the queued despawns, then the queued spawns
+    void flush()
+    {
+        despawned = despawns.size();
+        spawned = spawns.size();
+
+        for (int i = 0; i < despawns.size(); i++)
+        {
+            Sprite s = despawns.get(i);
+
+            // A sprite can be despawned before its spawn is applied, in
+            // which case the spawn below is skipped
+            if (s.index >= 0)
+            {
+                model.forget(s);
+                unlist(s);
+            }
+            else
+            {
+                s.spawning = false;
+            }
+
+            freeSlot(s);
+
+            if (s.isFireball())
+                model.fireballs.release((Fireball)s);
+        }
+        despawns.clear();
+
+        for (int i = 0; i < spawns.size(); i++)
+        {
+            Sprite s = spawns.get(i);
+
+            if (s.spawning)
+            {
+                s.spawning = false;
+                add(s);
+            }
+        }
+        spawns.clear();
+    }
+
+    void add(Sprite s)
+    {
+        s.index = sprites.size();
+        model.insert(s);
+    }
+
+    // Removes a sprite from the list by moving the last sprite into its place
+    void unlist(Sprite s)
+    {
+        int i = s.index;
+        Sprite last = sprites.remove(sprites.size() - 1);
+
+        if (last != s)
+        {
+            sprites.set(i, last);
+            last.index = i;
+        }
+
+        s.index = -1;
+    }
+
+    void freeSlot(Sprite s)
+    {
+        int slot = s.handle & SLOT_MASK;
+
+        if (slots[slot] != s)
+            return;
+
+        slots[slot] = null;
+        generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+        if (generations[slot] == 0)
+            generations[slot] = 1;
+
+        free[freeCount++] = slot;
+        s.handle = 0;
+    }
+
+    // Doubles the slot arrays, up to the most slots a handle can name
+    void grow()
+    {
+        if (slots.length >= 1 << SLOT_BITS)
+            throw new IllegalStateException("More than " + (1 << SLOT_BITS)
+                    + " sprites in the game at once");
+
+        int n = Math.min(slots.length * 2, 1 << SLOT_BITS);
+
+        Sprite[] newSlots = new Sprite[n];
+        System.arraycopy(slots, 0, newSlots, 0, slotCount);
+        slots = newSlots;
+
+        int[] newGenerations = new int[n];
+        System.arraycopy(generations, 0, newGenerations, 0, slotCount);
+        generations = newGenerations;
+
+        int[] newFree = new int[n];
+        System.arraycopy(free, 0, newFree, 0, freeCount);
+        free = newFree;
+    }
+}
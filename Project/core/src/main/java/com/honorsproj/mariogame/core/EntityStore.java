@@ -0,0 +1,500 @@
+package com.honorsproj.mariogame.core;
+
+import java.util.ArrayList;
+
+// Structure-of-arrays storage for tubes, goombas and fireballs. Each field
+// lives in its own primitive array, and entities are kept grouped by type
+// ([tubes | goombas | fireballs]) so each type is updated by one tight loop
+// over a contiguous range, with no virtual calls and no per-entity objects
+// touched. The Sprite objects in Model.sprites are kept as views: they are
+// written back to after every tick so drawing and other code still work.
+// Mario is not stored here; he stays a normal Sprite.
+//
+// Each pass only writes the entity it is updating: a goomba reads the
+// fireballs (which do not move until their own pass) and records which one
+// hit it, and the hits are applied once the goomba pass is over. So each
+// pass can be split into batches across a WorkerPool and still give exactly
+// the same result as running it on one thread. Goombas find fireballs
+// through a copy of the fireballs' x sorted before the pass, so each one
+// only looks at the fireballs around it.
+//
+// The result is also exactly what Model's object-at-a-time update gives,
+// which moves fireballs after everything else for the same reason and
+// takes the first hit by id.
+class EntityStore
+{
+    final static int goombaSpeed = 10;
+
+    // Entities per batch when updating across a WorkerPool
+    final static int batchSize = 1024;
+
+    // Per-entity fields
+    int[] x, y;
+    int[] subY;         // Fraction of a pixel below y (16.16 fixed point)
+    int[] w, h;
+    int[] velY;         // 16.16 fixed point
+    boolean[] flip;
+    boolean[] kill;
+    byte[] type;        // Sprite kind
+    boolean[] dying;    // Goombas only
+    int[] timer;        // Goomba death timer
+    int[] speed;        // Fireball horizontal speed
+    int[] hit;          // Fireball a goomba hit this tick (-1 if none)
+    Sprite[] views;     // Sprite each entity is written back to
+
+    // end[t] is one past the last entity of Sprite kind t. Kind t starts
+    // where kind t - 1 ends, and the range for Mario (kind 0) is always empty.
+    final int[] end = new int[Sprite.KINDS];
+
+    EntityStore(int capacity)
+    {
+        allocate(Math.max(capacity, 16));
+    }
+
+    void allocate(int capacity)
+    {
+        int n = size();
+
+        x = grow(x, capacity, n);
+        y = grow(y, capacity, n);
+        subY = grow(subY, capacity, n);
+        velY = grow(velY, capacity, n);
+        w = grow(w, capacity, n);
+        h = grow(h, capacity, n);
+        timer = grow(timer, capacity, n);
+        speed = grow(speed, capacity, n);
+        hit = grow(hit, capacity, n);
+
+        boolean[] newFlip = new boolean[capacity];
+        boolean[] newKill = new boolean[capacity];
+        boolean[] newDying = new boolean[capacity];
+        byte[] newType = new byte[capacity];
+        Sprite[] newViews = new Sprite[capacity];
+
+        if (n > 0)
+        {
+            System.arraycopy(flip, 0, newFlip, 0, n);
+            System.arraycopy(kill, 0, newKill, 0, n);
+            System.arraycopy(dying, 0, newDying, 0, n);
+            System.arraycopy(type, 0, newType, 0, n);
+            System.arraycopy(views, 0, newViews, 0, n);
+        }
+
+        flip = newFlip;
+        kill = newKill;
+        dying = newDying;
+        type = newType;
+        views = newViews;
+    }
+
+    static int[] grow(int[] a, int capacity, int n)
+    {
+        int[] b = new int[capacity];
+        if (n > 0)
+            System.arraycopy(a, 0, b, 0, n);
+        return b;
+    }
+
+    int size()
+    {
+        return end[Sprite.KINDS - 1];
+    }
+
+    int start(int t)
+    {
+        return t == 0 ? 0 : end[t - 1];
+    }
+
+    // Loads every sprite except Mario
+    void load(ArrayList<Sprite> sprites)
+    {
+        for (int i = 0; i < sprites.size(); i++)
+        {
+            Sprite s = sprites.get(i);
+
+            if (!s.isMario())
+                add(s);
+        }
+    }
+
+    // Adds a sprite to the end of its type's range. Later ranges are shifted
+    // along by moving their first entity to their end, so this costs one
+    // move per type rather than one per entity.
+    void add(Sprite s)
+    {
+        if (size() == x.length)
+            allocate(x.length * 2);
+
+        int t = s.kind();
+
+        for (int u = Sprite.KINDS - 1; u > t; u--)
+        {
+            if (end[u] > start(u))
+                move(start(u), end[u]);
+            end[u]++;
+        }
+
+        int i = end[t]++;
+
+        x[i] = s.x;
+        y[i] = s.y;
+        subY[i] = s.subY;
+        w[i] = s.w;
+        h[i] = s.h;
+        flip[i] = s.flip;
+        kill[i] = s.kill;
+        type[i] = (byte)t;
+        views[i] = s;
+        s.slot = i;
+
+        if (t == Sprite.GOOMBA)
+        {
+            Goomba g = (Goomba)s;
+            velY[i] = g.velY;
+            dying[i] = g.dying;
+            timer[i] = g.deathTimer;
+        }
+        else if (t == Sprite.FIREBALL)
+        {
+            Fireball f = (Fireball)s;
+            velY[i] = f.velY;
+            speed[i] = f.speed;
+        }
+    }
+
+    // Removes entity i by filling its slot with the last entity of its type,
+    // then closing the gap left at the end of that range the same way for
+    // every later type.
+    void remove(int i)
+    {
+        int t = type[i];
+        int last = end[t] - 1;
+
+        views[i].slot = -1;
+        move(last, i);
+        end[t]--;
+
+        // The free slot is now the first slot of the next range
+        for (int u = t + 1; u < Sprite.KINDS; u++)
+        {
+            move(end[u] - 1, start(u));
+            end[u]--;
+        }
+
+        views[size()] = null;
+    }
+
+    // Picks up new sprite sizes after Model.setSpriteSizes()
+    void refreshSizes()
+    {
+        for (int i = 0; i < size(); i++)
+        {
+            w[i] = views[i].w;
+            h[i] = views[i].h;
+        }
+    }
+
+    // Copies entity from into slot to
+    void move(int from, int to)
+    {
+        if (from == to)
+            return;
+
+        x[to] = x[from];
+        y[to] = y[from];
+        subY[to] = subY[from];
+        w[to] = w[from];
+        h[to] = h[from];
+        velY[to] = velY[from];
+        flip[to] = flip[from];
+        kill[to] = kill[from];
+        type[to] = type[from];
+        dying[to] = dying[from];
+        timer[to] = timer[from];
+        speed[to] = speed[from];
+        views[to] = views[from];
+        views[to].slot = to;
+    }
+
+    // Returns true iff entities i and j overlap (same test as Sprite.collidesWith)
+    boolean collides(int i, int j)
+    {
+        return !(x[i] + w[i] < x[j])
+                && !(x[i] > x[j] + w[j])
+                && !(y[i] + h[i] < y[j])
+                && !(y[i] > y[j] + h[j]);
+    }
+
+    // What the current tick's passes read (set before each tick so the
+    // batch jobs below need not be made anew every tick)
+    int ground, scrollVal, viewWidth;
+    TubeIndex tubes;
+
+    // Fireballs' x (keys) and slots (values) sorted by x, and the widest
+    // fireball, so a search knows how far left to start
+    final KeySort fireballsByX = new KeySort();
+    int maxFireballWidth;
+
+    // Sprites to despawn this tick, sorted into the order the object update would
+    final KeySort despawnOrder = new KeySort();
+
+    final WorkerPool.Job goombaJob = new WorkerPool.Job()
+    {
+        @Override
+        public void run(int batch)
+        {
+            int from = start(Sprite.GOOMBA) + batch * batchSize;
+            updateGoombas(from, Math.min(from + batchSize, end[Sprite.GOOMBA]));
+        }
+    };
+
+    final WorkerPool.Job fireballJob = new WorkerPool.Job()
+    {
+        @Override
+        public void run(int batch)
+        {
+            int from = start(Sprite.FIREBALL) + batch * batchSize;
+            updateFireballs(from, Math.min(from + batchSize, end[Sprite.FIREBALL]));
+        }
+    };
+
+    final WorkerPool.Job writeBackJob = new WorkerPool.Job()
+    {
+        @Override
+        public void run(int batch)
+        {
+            int from = start(Sprite.GOOMBA) + batch * batchSize;
+            writeBack(from, Math.min(from + batchSize, size()));
+        }
+    };
+
+    // Runs one tick for every stored entity, removes the ones that died and
+    // writes the results back to their sprites. Passes are split across
+    // workers if there are any.
+    void update(Model model, WorkerPool workers)
+    {
+        ground = model.ground;
+        scrollVal = model.scrollVal;
+        viewWidth = model.viewWidth;
+        tubes = model.tubes();
+
+        sortFireballs();
+        run(workers, goombaJob, end[Sprite.GOOMBA] - start(Sprite.GOOMBA));
+        applyHits();
+        run(workers, fireballJob, end[Sprite.FIREBALL] - start(Sprite.FIREBALL));
+        despawnKilled(model);
+        run(workers, writeBackJob, size() - start(Sprite.GOOMBA));
+
+        tubes = null;
+    }
+
+    // Runs a job over count entities, on this thread if there is only one batch
+    static void run(WorkerPool workers, WorkerPool.Job job, int count)
+    {
+        int batches = (count + batchSize - 1) / batchSize;
+
+        if (workers == null || batches <= 1)
+        {
+            for (int batch = 0; batch < batches; batch++)
+            {
+                job.run(batch);
+            }
+        }
+        else
+        {
+            workers.run(job, batches);
+        }
+    }
+
+    // Fills fireballsByX for this tick's goomba pass
+    void sortFireballs()
+    {
+        fireballsByX.clear();
+        maxFireballWidth = 0;
+
+        for (int j = start(Sprite.FIREBALL); j < end[Sprite.FIREBALL]; j++)
+        {
+            fireballsByX.add(x[j], j);
+            maxFireballWidth = Math.max(maxFireballWidth, w[j]);
+        }
+
+        fireballsByX.sort();
+    }
+
+    // Updates goombas from to to - 1, only writing to those goombas
+    void updateGoombas(int from, int to)
+    {
+        KeySort fire = fireballsByX;
+
+        for (int i = from; i < to; i++)
+        {
+            hit[i] = -1;
+
+            if (flip[i] && !dying[i])
+                x[i] += goombaSpeed;
+            else if (!dying[i])
+                x[i] -= goombaSpeed;
+
+            // Time until death
+            if (dying[i] && timer[i] < 1)
+                kill[i] = true;
+            else if (dying[i])
+                timer[i]--;
+
+            // The first fireball (by id) to hit the goomba kills it, and is
+            // used up once every goomba has been updated. Fireballs from
+            // first() on that start at or before the goomba's right edge
+            // are the only ones that can reach it.
+            if (!dying[i])
+            {
+                for (int k = fire.first(x[i] - maxFireballWidth);
+                        k < fire.size && fire.keys[k] <= x[i] + w[i]; k++)
+                {
+                    int j = fire.values[k];
+
+                    if (collides(i, j) && (hit[i] < 0 || views[j].id < views[hit[i]].id))
+                        hit[i] = j;
+                }
+
+                if (hit[i] >= 0)
+                    dying[i] = true;
+            }
+
+            // Flip goomba if they collide with a tube
+            for (int j = tubes.first(x[i]); j < tubes.size && tubes.x[j] <= x[i] + w[i]; j++)
+            {
+                if (tubes.collides(j, x[i], y[i], w[i], h[i]))
+                    flip[i] = !flip[i];
+            }
+
+            // Same falling rules as Goomba.update()
+            if (Fixed.position(ground - h[i], 0) - Fixed.position(y[i], subY[i]) < velY[i])
+            {
+                y[i] = ground - h[i];
+                subY[i] = 0;
+                velY[i] = 0;
+            }
+            else if (y[i] + h[i] < ground)
+            {
+                velY[i] += Model.gravity;
+            }
+            else
+            {
+                velY[i] = 0;
+            }
+
+            moveY(i);
+        }
+    }
+
+    // Kills the fireballs goombas hit this tick
+    void applyHits()
+    {
+        for (int i = start(Sprite.GOOMBA); i < end[Sprite.GOOMBA]; i++)
+        {
+            if (hit[i] >= 0)
+                kill[hit[i]] = true;
+        }
+    }
+
+    // Updates fireballs from to to - 1, only writing to those fireballs
+    void updateFireballs(int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            if (flip[i])
+                x[i] -= speed[i];
+            else
+                x[i] += speed[i];
+
+            if (x[i] + w[i] < scrollVal - Fireball.offscreenMargin
+                    || x[i] > scrollVal + viewWidth + Fireball.offscreenMargin)
+            {
+                kill[i] = true;
+            }
+
+            if (y[i] + h[i] < ground)
+                velY[i] += Fireball.gravity;
+
+            moveY(i);
+
+            if (y[i] + h[i] > ground)
+            {
+                y[i] = ground - h[i];
+                subY[i] = 0;
+                velY[i] = -velY[i];
+            }
+        }
+    }
+
+    // Same as Sprite.moveY() for entity i
+    void moveY(int i)
+    {
+        long position = Fixed.position(y[i], subY[i]) + velY[i];
+        y[i] = Fixed.pixels(position);
+        subY[i] = Fixed.fraction(position);
+    }
+
+    // Despawns the goombas that died and the fireballs that were used up or
+    // left the screen. The EntityManager takes them out of the store and
+    // the sprite list once the update is over, in the order they were
+    // despawned, so they are despawned in the order the object update
+    // would: goombas and what they hit in list order, then fireballs.
+    void despawnKilled(Model model)
+    {
+        int listed = model.sprites.size();
+        despawnOrder.clear();
+
+        for (int i = start(Sprite.GOOMBA); i < end[Sprite.GOOMBA]; i++)
+        {
+            if (kill[i] || hit[i] >= 0)
+                despawnOrder.add(views[i].index, i);
+        }
+
+        for (int i = start(Sprite.FIREBALL); i < end[Sprite.FIREBALL]; i++)
+        {
+            if (kill[i])
+                despawnOrder.add(listed + views[i].index, i);
+        }
+
+        despawnOrder.sort();
+
+        for (int k = 0; k < despawnOrder.size; k++)
+        {
+            int i = despawnOrder.values[k];
+
+            // A goomba that was hit rather than killed takes its fireball with it
+            if (type[i] == Sprite.GOOMBA && !kill[i])
+                model.despawn(views[hit[i]]);
+            else
+                model.despawn(views[i]);
+        }
+    }
+
+    // Copies entities from to to - 1 (goombas and fireballs only) back to their sprites
+    void writeBack(int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            if (type[i] == Sprite.GOOMBA)
+            {
+                Goomba g = (Goomba)views[i];
+                g.x = x[i];
+                g.y = y[i];
+                g.subY = subY[i];
+                g.flip = flip[i];
+                g.velY = velY[i];
+                g.dying = dying[i];
+                g.deathTimer = timer[i];
+            }
+            else
+            {
+                Fireball f = (Fireball)views[i];
+                f.x = x[i];
+                f.y = y[i];
+                f.subY = subY[i];
+                f.velY = velY[i];
+            }
+        }
+    }
+}
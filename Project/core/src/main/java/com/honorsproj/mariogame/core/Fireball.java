@@ -0,0 +1,85 @@
+package com.honorsproj.mariogame.core;
+
+// FIREBALL CLASS
+public class Fireball extends Sprite
+{
+    Model model;
+    int velY;       // Vertical velocity (16.16 fixed point)
+    int speed;  // Horizontal speed
+    boolean pooled; // Belongs to the Model's FireballPool
+
+    // How far past the edge of the screen a fireball can go before it is removed
+    final static int offscreenMargin = 200;
+
+    // Downward acceleration (16.16 fixed point, 2 pixels per tick)
+    final static int gravity = Fixed.of(2);
+
+    public Fireball(Model m, int posX, int posY, boolean flip)
+    {
+        model = m;
+
+        w = m.sizes.fireballW;
+        h = m.sizes.fireballH;
+
+        reset(posX, posY, flip);
+    }
+
+    // Puts the fireball back in its just-fired state (keeps its size)
+    void reset(int posX, int posY, boolean flip)
+    {
+        x = posX;
+        y = posY;
+        subY = 0;
+        lastX = x;
+        lastY = y;
+
+        this.flip = flip;
+        kill = false;
+
+        velY = 0;
+        speed = 25;
+    }
+
+    @Override
+    public void update()
+    {
+        // Horizontal movement
+        if (flip)
+            x -= speed;
+        else
+            x += speed;
+
+        // Remove fireball from game once it has left the screen + some safety
+        if (x + w < model.scrollVal - offscreenMargin
+                || x > model.scrollVal + model.viewWidth + offscreenMargin)
+        {
+            model.despawn(this);
+        }
+
+        // Vertical motion
+        if (y + h < model.ground)
+        {
+            velY += gravity;
+        }
+
+        moveY(velY);
+
+        if (y + h > model.ground)
+        {
+            landOn(model.ground);
+            velY = -velY;
+        }
+    }
+
+    @Override
+    public int kind()
+    {
+        return FIREBALL;
+    }
+
+    @Override
+    public boolean isFireball()
+    {
+        return true;
+    }
+}
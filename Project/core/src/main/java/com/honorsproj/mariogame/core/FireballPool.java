@@ -0,0 +1,73 @@
+package com.honorsproj.mariogame.core;
+
+// Fixed set of fireballs that get reused instead of allocated on every shot.
+// Mario takes one when he fires and the Model gives it back once it is
+// killed (hit a goomba or left the screen).
+public class FireballPool
+{
+    final Fireball[] free;
+    int freeCount;
+
+    // Stats
+    public int live;   // Fireballs currently in the game
+    public int peak;   // Most fireballs ever in the game at once
+    public int misses; // Shots dropped because the pool was empty
+
+    FireballPool(Model model, int capacity)
+    {
+        free = new Fireball[capacity];
+
+        for (int i = 0; i < capacity; i++)
+        {
+            Fireball f = new Fireball(model, 0, 0, false);
+            f.pooled = true;
+            free[i] = f;
+        }
+
+        freeCount = capacity;
+    }
+
+    public int capacity()
+    {
+        return free.length;
+    }
+
+    // Gives the fireballs waiting in the pool a new size
+    void resize(SpriteSizes sizes)
+    {
+        for (int i = 0; i < freeCount; i++)
+        {
+            sizes.apply(free[i]);
+        }
+    }
+
+    // Returns a fireball ready to be added to the game, or null if they are all in use
+    Fireball obtain(int posX, int posY, boolean flip)
+    {
+        if (freeCount == 0)
+        {
+            misses++;
+            return null;
+        }
+
+        Fireball f = free[--freeCount];
+        free[freeCount] = null;
+        f.reset(posX, posY, flip);
+
+        live++;
+        if (live > peak)
+            peak = live;
+
+        return f;
+    }
+
+    // Takes back a fireball that has been removed from the game
+    void release(Fireball f)
+    {
+        if (!f.pooled || freeCount == free.length)
+            return;
+
+        free[freeCount++] = f;
+        live--;
+    }
+}
@@ -0,0 +1,49 @@
+package com.honorsproj.mariogame.core;
+
+// 16.16 fixed-point numbers for the physics. Velocities and accelerations
+// are ints counting 1/65536ths of a pixel. Positions stay whole pixels in
+// Sprite.x and Sprite.y (what collisions and drawing use) with the fraction
+// of a pixel a sprite has fallen past kept in Sprite.subY, so motion adds
+// up exactly instead of being truncated every tick. Only integer maths is
+// used, so the game plays out the same on every JVM and device.
+final class Fixed
+{
+    final static int SHIFT = 16;
+    final static int ONE = 1 << SHIFT;
+    final static int FRACTION = ONE - 1;
+
+    private Fixed()
+    {
+    }
+
+    // A whole number of pixels
+    static int of(int pixels)
+    {
+        return pixels << SHIFT;
+    }
+
+    // tenths / 10 pixels, rounded down to the nearest 1/65536
+    static int ofTenths(int tenths)
+    {
+        return (int)(((long)tenths << SHIFT) / 10);
+    }
+
+    // A position of pixels plus fraction 1/65536ths. Positions are longs so
+    // adding a velocity can never overflow.
+    static long position(int pixels, int fraction)
+    {
+        return ((long)pixels << SHIFT) + fraction;
+    }
+
+    // Whole pixels in a position (rounds down, also for negative positions)
+    static int pixels(long position)
+    {
+        return (int)(position >> SHIFT);
+    }
+
+    // Fraction of a pixel past pixels(position), from 0 to FRACTION
+    static int fraction(long position)
+    {
+        return (int)position & FRACTION;
+    }
+}
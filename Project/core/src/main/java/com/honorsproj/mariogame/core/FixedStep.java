@@ -0,0 +1,85 @@
+package com.honorsproj.mariogame.core;
+
+// Fixed timestep bookkeeping for the simulation loop. Time that passes
+// builds up in an accumulator and is spent one tick at a time, so the game
+// runs at the same rate however often the loop comes round. Times are
+// passed in rather than read from a clock, so tests can step through any
+// timeline.
+//
+//     int steps = clock.advance(System.nanoTime());
+//     for (int i = 0; i < steps; i++)
+//         tick(clock.due(i));
+public class FixedStep
+{
+    public final int tickRate;      // Ticks per second
+    public final long tickNanos;    // Length of one tick
+    public int maxSteps = 5;        // Most ticks per advance() when catching up
+
+    long previous = -1;     // Time of the last advance()
+    long accumulator;       // Time that has passed but not been simulated yet
+    long now;
+    int steps;              // Ticks the last advance() returned
+
+    public FixedStep(int tickRate)
+    {
+        this.tickRate = tickRate;
+        tickNanos = 1000000000L / tickRate;
+    }
+
+    // Starts the clock at now with nothing owed
+    public void start(long now)
+    {
+        previous = now;
+        this.now = now;
+        accumulator = 0;
+        steps = 0;
+    }
+
+    // Adds the time since the last call and returns how many ticks are due,
+    // at most maxSteps. Anything still owed past that is dropped, so a slow
+    // device falls behind instead of spiraling.
+    public int advance(long now)
+    {
+        if (previous < 0)
+            previous = now;
+
+        accumulator += now - previous;
+        previous = now;
+        this.now = now;
+
+        steps = (int)Math.min(accumulator / tickNanos, maxSteps);
+        accumulator -= steps * tickNanos;
+
+        // Too far behind to catch up, so drop the backlog
+        if (accumulator >= tickNanos)
+            accumulator %= tickNanos;
+
+        return steps;
+    }
+
+    // When the i-th tick of the last advance() was due
+    public long due(int i)
+    {
+        return lastTick() - (steps - 1 - i) * tickNanos;
+    }
+
+    // When the last tick run was due
+    public long lastTick()
+    {
+        return now - accumulator;
+    }
+
+    // How long to sleep after time now until the next tick is due
+    public long sleepNanos(long now)
+    {
+        return tickNanos - accumulator - (now - this.now);
+    }
+
+    // How far between a tick due at tickTime and the next one time is, from
+    // 0 to 1, for drawing between the two
+    public float alpha(long time, long tickTime)
+    {
+        float alpha = (float)(time - tickTime) / tickNanos;
+        return Math.max(0f, Math.min(1f, alpha));
+    }
+}
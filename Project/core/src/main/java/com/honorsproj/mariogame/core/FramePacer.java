@@ -0,0 +1,109 @@
+package com.honorsproj.mariogame.core;
+
+// Decides which display refreshes (vsyncs) get a new frame. The render
+// thread calls onVsync() with each vsync's timestamp and draws only when
+// it returns true, then reports how long drawing took with frameDone().
+// Times are passed in rather than read from a clock, so tests can play
+// any sequence of vsyncs.
+//
+// A frame that takes longer than its budget is janky: it misses the vsync
+// it was meant for and the screen shows the old frame again. After a
+// janky frame the pacer draws on every second vsync (then every third, up
+// to maxInterval), which gives the renderer a steady, longer budget rather
+// than dropping frames at random. Once frames fit easily in a shorter
+// budget it steps back down. The simulation runs on its own thread, so
+// skipped frames never slow the game down.
+public class FramePacer
+{
+    public long periodNanos;        // Time between vsyncs, refined as they arrive
+    public int maxInterval = 4;     // Most vsyncs per frame when skipping
+
+    int interval = 1;       // Draw on every interval-th vsync
+    int sinceFrame;         // Vsyncs since the last frame was drawn
+    int easyFrames;         // Frames in a row that would have fit a shorter interval
+    long lastVsync = -1;
+
+    // Frames in a row that have to fit before the interval goes down
+    final static int stepDownAfter = 60;
+
+    // Stats
+    public long vsyncs;     // Vsyncs seen, including ones that arrived late
+    public long frames;     // Frames drawn
+    public long skipped;    // Vsyncs passed over on purpose
+    public long dropped;    // Vsyncs missed because the last callback came too late
+    public long janky;      // Frames that took longer than their budget
+
+    public FramePacer(long periodNanos)
+    {
+        this.periodNanos = periodNanos;
+    }
+
+    public int interval()
+    {
+        return interval;
+    }
+
+    // Called at each vsync. Returns true if a frame should be drawn for it.
+    public boolean onVsync(long vsyncNanos)
+    {
+        int missed = 0;
+
+        if (lastVsync >= 0)
+        {
+            long delta = vsyncNanos - lastVsync;
+
+            // Vsyncs that went by without a callback
+            missed = (int)Math.max((delta + periodNanos / 2) / periodNanos - 1, 0);
+
+            if (missed > 0)
+                dropped += missed;
+            else if (delta > 0)
+                periodNanos += (delta - periodNanos) / 16;  // Smooths out timer noise
+        }
+
+        lastVsync = vsyncNanos;
+        vsyncs++;
+        sinceFrame += missed + 1;
+
+        if (sinceFrame < interval)
+        {
+            skipped++;
+            return false;
+        }
+
+        sinceFrame = 0;
+        return true;
+    }
+
+    // Called once a frame has been drawn, with how long drawing took
+    public void frameDone(long drawNanos)
+    {
+        frames++;
+
+        if (drawNanos > periodNanos * interval)
+        {
+            janky++;
+            easyFrames = 0;
+
+            if (interval < maxInterval)
+                interval++;
+        }
+        else if (interval > 1 && drawNanos < periodNanos * (interval - 1) * 3 / 4)
+        {
+            if (++easyFrames >= stepDownAfter)
+            {
+                interval--;
+                easyFrames = 0;
+            }
+        }
+        else
+        {
+            easyFrames = 0;
+        }
+    }
+
+    public void reset()
+    {
+        vsyncs = frames = skipped = dropped = janky = 0;
+    }
+}
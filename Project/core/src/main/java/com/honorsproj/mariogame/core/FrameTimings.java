@@ -0,0 +1,68 @@
+package com.honorsproj.mariogame.core;
+
+import java.util.Locale;
+
+// One LatencyHistogram per phase of a frame, so it is clear where frame
+// time goes. Input and update are timed on the simulation thread, the
+// rest on the render thread.
+public class FrameTimings
+{
+    // Phases
+    public final static int INPUT = 0;      // Draining touches into buttons
+    public final static int UPDATE = 1;     // Model.tick()
+    public final static int LOCK = 2;       // SurfaceHolder.lockCanvas()
+    public final static int DRAW = 3;       // Drawing into the canvas
+    public final static int POST = 4;       // SurfaceHolder.unlockCanvasAndPost()
+    public final static int PHASES = 5;
+
+    public final static String[] names = { "input", "update", "lock", "draw", "post" };
+
+    final LatencyHistogram[] phases = new LatencyHistogram[PHASES];
+
+    public FrameTimings()
+    {
+        for (int i = 0; i < PHASES; i++)
+        {
+            phases[i] = new LatencyHistogram();
+        }
+    }
+
+    public LatencyHistogram get(int phase)
+    {
+        return phases[phase];
+    }
+
+    // Records how long a phase took and returns the time now, so phases
+    // can be timed back to back: t = timings.end(PHASE, t)
+    public long end(int phase, long startNanos)
+    {
+        long now = System.nanoTime();
+        phases[phase].record(now - startNanos);
+        return now;
+    }
+
+    // One line per phase, e.g. "draw    p50 1.20 p95 2.40 p99 3.10 max 8.00 ms (n=3600)"
+    public String[] summary()
+    {
+        String[] lines = new String[PHASES];
+
+        for (int i = 0; i < PHASES; i++)
+        {
+            LatencyHistogram h = phases[i];
+            lines[i] = String.format(Locale.US,
+                    "%-7s p50 %.2f p95 %.2f p99 %.2f max %.2f ms (n=%d)",
+                    names[i], h.percentile(50) / 1e6, h.percentile(95) / 1e6,
+                    h.percentile(99) / 1e6, h.max() / 1e6, h.count());
+        }
+
+        return lines;
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < PHASES; i++)
+        {
+            phases[i].reset();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.honorsproj.mariogame.core;
+
+import java.util.ArrayList;
+
+// GOOMBA CLASS
+public class Goomba extends Sprite
+{
+    Model model;
+
+    // When goomba gets hit by a fireball...
+    public boolean dying;
+    int deathTimer;
+    // Vertical velocity (16.16 fixed point)
+    int velY;
+
+    public Goomba(Model m, int posX, int posY)
+    {
+        model = m;
+
+        x = posX;
+        y = posY;
+        lastX = x;
+        lastY = y;
+        w = m.sizes.goombaW;
+        h = m.sizes.goombaH;
+
+        dying = false;
+        deathTimer = 8;
+        kill = false;
+
+        velY = 0;
+    }
+
+    @Override
+    public void update() {
+        if (flip && !dying)   // Move to right. Goomba orientation is backwards, I know.
+            x += 10;                        // Sorry about it.
+        else if (!dying)
+            x -= 10;
+
+        // Time until death
+        if (dying && deathTimer < 1)
+        {
+            model.despawn(this);
+        }
+        else if (dying)
+        {
+            deathTimer--;
+        }
+
+        // The first fireball (by id) to hit the goomba kills it and is used up
+        if (!dying)
+        {
+            ArrayList<Sprite> sprites = model.nearby(this);
+            Sprite hit = null;
+
+            for (int i = 0; i < sprites.size(); i++)
+            {
+                Sprite s = sprites.get(i);
+
+                if (s.isFireball() && collidesWith(s)
+                        && (hit == null || s.id < hit.id))
+                    hit = s;
+            }
+
+            if (hit != null)
+            {
+                dying = true;   // Mark for death
+                model.despawn(hit);
+            }
+        }
+
+        // Flip goomba if they collide with a tube
+        TubeIndex tubes = model.tubes();
+
+        for (int i = tubes.first(x); i < tubes.size && tubes.x[i] <= x + w; i++)
+        {
+            if (tubes.collides(i, x, y, w, h))
+                flip = !flip;
+        }
+
+        // Keeps goomba from briefly clipping through the ground
+        if (wouldPassGround(model.ground, velY))
+        {
+            landOn(model.ground);
+            velY = 0;
+        }
+        // Goomba falling normally
+        else if (y + h < model.ground)
+        {
+            velY += Model.gravity;
+        }
+        else
+        {
+            velY = 0;
+        }
+
+        // Update vertical position
+        moveY(velY);
+    }
+
+    @Override
+    public int kind()
+    {
+        return GOOMBA;
+    }
+
+    @Override
+    public boolean isGoomba()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,101 @@
+package com.honorsproj.mariogame.core;
+
+// Runs the game simulation without a screen, as fast as it will go.
+// Input comes from a script instead of touches, so runs are repeatable.
+public class HeadlessDriver
+{
+    // Screen the simulation pretends to have (ground bitmap is 38 pixels tall)
+    public final static int screenWidth = 1920;
+    public final static int screenHeight = 1080;
+    public final static int groundHeight = 38;
+
+    // Supplies the Input buttons held during each tick
+    public interface InputScript
+    {
+        int buttons(long tick);
+    }
+
+    // Walks right and left, jumping now and then and firing constantly
+    public final static InputScript walkAndFire = new InputScript()
+    {
+        @Override
+        public int buttons(long tick)
+        {
+            int buttons = (tick / 600) % 2 == 0 ? Input.MOVE_RIGHT : Input.MOVE_LEFT;
+
+            if (tick % 90 < 20)
+                buttons |= Input.JUMP;
+
+            // Fire is semi-automatic, so it has to be let go between shots
+            if (tick % 4 < 2)
+                buttons |= Input.FIRE;
+
+            return buttons;
+        }
+    };
+
+    final Model model;
+    final InputScript input;
+    long tick;  // Ticks run so far
+
+    public HeadlessDriver(Model model, InputScript input)
+    {
+        this.model = model;
+        this.input = input;
+    }
+
+    // Makes a Model set up the way GameView would for the pretend screen
+    public static Model createModel()
+    {
+        Model model = new Model();
+        model.ground = screenHeight - groundHeight;
+        model.viewWidth = screenWidth;
+        return model;
+    }
+
+    public Model getModel()
+    {
+        return model;
+    }
+
+    public long getTick()
+    {
+        return tick;
+    }
+
+    // Runs the next n ticks and returns how many ticks per second that took
+    public double run(long n)
+    {
+        long start = System.nanoTime();
+
+        for (long i = 0; i < n; i++)
+        {
+            step();
+        }
+
+        long elapsed = Math.max(System.nanoTime() - start, 1);
+        return n * 1e9 / elapsed;
+    }
+
+    // Runs the next tick
+    void step()
+    {
+        model.tick(input.buttons(tick));
+        tick++;
+    }
+
+    // Usage: HeadlessDriver [ticks]
+    public static void main(String[] args)
+    {
+        long ticks = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+
+        HeadlessDriver driver = new HeadlessDriver(createModel(), walkAndFire);
+
+        // Let the JIT warm up before measuring
+        driver.run(Math.min(ticks, 10000));
+        double tps = driver.run(ticks);
+
+        System.out.printf("%d ticks, %.0f ticks/s, %d sprites, %d fireballs peak%n",
+                ticks, tps, driver.model.sprites.size(), driver.model.fireballs.peak);
+    }
+}
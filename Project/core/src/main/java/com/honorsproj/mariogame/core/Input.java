@@ -0,0 +1,15 @@
+package com.honorsproj.mariogame.core;
+
+// Buttons the player can hold during a tick. A tick's input is these bits
+// OR'd together, so the same input always gives the same tick.
+public final class Input
+{
+    public final static int MOVE_LEFT = 1;
+    public final static int MOVE_RIGHT = 1 << 1;
+    public final static int JUMP = 1 << 2;
+    public final static int FIRE = 1 << 3;
+
+    private Input()
+    {
+    }
+}
@@ -0,0 +1,272 @@
+package com.honorsproj.mariogame.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// A recording of the buttons held on every tick of a game, with enough
+// about how the Model was set up to build the same Model again, and a
+// hash of the Model's state every hashInterval ticks to check a replay
+// against. All numbers are big-endian:
+//
+//   header   int magic ("PREC"), short version, int hash interval,
+//            long seed, UTF level id, int tick rate, int view width,
+//            int ground, 8 ints sprite sizes (w, h of mario, tube,
+//            goomba, fireball), int chunk width (0 if the level was not
+//            streamed), int tick count
+//   ticks    per tick: byte Input buttons
+//   hashes   int state hash before the first tick, then one after every
+//            hashInterval ticks
+//
+// At 60 ticks a second and a hash every tick, an hour of play is about 1 MB
+// on disk. In memory the buttons are kept as runs of ticks with the same
+// buttons held, so a log grows with how often the buttons change rather
+// than with how long the game has run, and a whole session can be kept.
+// Version 1 files, which had a short hash interval, and version 2 files,
+// which had no chunk width, can still be read.
+public class InputLog
+{
+    public final static int MAGIC = 0x50524543;    // "PREC"
+    public final static int VERSION = 3;
+
+    // How the Model was set up
+    public long seed;           // Nothing in the Model is random yet, so only recorded
+    public String levelId;      // Level resource name, or "" for the built-in level
+    public int tickRate;
+    public int viewWidth;
+    public int ground;
+    public final SpriteSizes sizes = new SpriteSizes();
+    public int chunkWidth;      // Model.useStreaming() chunk width, or 0 if not streamed
+
+    public int hashInterval;
+    public int tickCount;
+
+    // Run i holds runButtons[i] from tick runStarts[i] until the next run
+    int[] runStarts = new int[64];
+    byte[] runButtons = new byte[64];
+    int runCount;
+
+    int[] hashes = new int[64];
+    int hashCount;
+
+    // Starts a recording of a Model that has been set up but not run yet
+    public InputLog(Model model, String levelId, long seed, int tickRate, int hashInterval)
+    {
+        this.levelId = levelId;
+        this.seed = seed;
+        this.tickRate = tickRate;
+        this.hashInterval = Math.max(hashInterval, 1);
+        viewWidth = model.viewWidth;
+        ground = model.ground;
+
+        SpriteSizes s = model.sizes;
+        sizes.marioW = s.marioW;
+        sizes.marioH = s.marioH;
+        sizes.tubeW = s.tubeW;
+        sizes.tubeH = s.tubeH;
+        sizes.goombaW = s.goombaW;
+        sizes.goombaH = s.goombaH;
+        sizes.fireballW = s.fireballW;
+        sizes.fireballH = s.fireballH;
+
+        if (model.streamer != null)
+            chunkWidth = model.streamer.chunkWidth;
+
+        addHash(model.stateHash());
+    }
+
+    InputLog()
+    {
+    }
+
+    // Records a tick just run on the Model with the given buttons held
+    public void record(int buttons, Model model)
+    {
+        addTick(buttons);
+
+        if (tickCount % hashInterval == 0)
+            addHash(model.stateHash());
+    }
+
+    // Adds the buttons for the next tick, starting a run if they changed
+    void addTick(int buttons)
+    {
+        if (runCount == 0 || runButtons[runCount - 1] != (byte)buttons)
+        {
+            if (runCount == runStarts.length)
+            {
+                runStarts = Arrays.copyOf(runStarts, runCount * 2);
+                runButtons = Arrays.copyOf(runButtons, runCount * 2);
+            }
+
+            runStarts[runCount] = tickCount;
+            runButtons[runCount] = (byte)buttons;
+            runCount++;
+        }
+
+        tickCount++;
+    }
+
+    void addHash(int hash)
+    {
+        if (hashCount == hashes.length)
+            hashes = Arrays.copyOf(hashes, Math.max(hashCount * 2, 64));
+
+        hashes[hashCount++] = hash;
+    }
+
+    // Buttons held on a tick
+    public int buttons(int tick)
+    {
+        return runButtons[run(tick)] & 0xFF;
+    }
+
+    // Index of the run a tick is in
+    int run(int tick)
+    {
+        int lo = 0, hi = runCount - 1;
+
+        while (lo < hi)
+        {
+            int mid = (lo + hi + 1) >>> 1;
+            if (runStarts[mid] <= tick)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+
+        return lo;
+    }
+
+    // State hash after the given tick, which must be a multiple of
+    // hashInterval (0 is the state before the first tick)
+    public int hashAfter(int tick)
+    {
+        return hashes[tick / hashInterval];
+    }
+
+    // Builds the Model the recording started from, the way the game does:
+    // the level first, then the screen size and sprite sizes, then streaming
+    public Model createModel(LevelFile level)
+    {
+        Model model = new Model(new SpriteSizes(), level);
+        model.viewWidth = viewWidth;
+        model.ground = ground;
+        model.setSpriteSizes(sizes);
+
+        if (chunkWidth > 0)
+            model.useStreaming(chunkWidth);
+
+        return model;
+    }
+
+    public void write(File file) throws IOException
+    {
+        DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+
+        try
+        {
+            data.writeInt(MAGIC);
+            data.writeShort(VERSION);
+            data.writeInt(hashInterval);
+            data.writeLong(seed);
+            data.writeUTF(levelId);
+            data.writeInt(tickRate);
+            data.writeInt(viewWidth);
+            data.writeInt(ground);
+            data.writeInt(sizes.marioW);
+            data.writeInt(sizes.marioH);
+            data.writeInt(sizes.tubeW);
+            data.writeInt(sizes.tubeH);
+            data.writeInt(sizes.goombaW);
+            data.writeInt(sizes.goombaH);
+            data.writeInt(sizes.fireballW);
+            data.writeInt(sizes.fireballH);
+            data.writeInt(chunkWidth);
+            data.writeInt(tickCount);
+
+            for (int i = 0; i < runCount; i++)
+            {
+                int end = i + 1 < runCount ? runStarts[i + 1] : tickCount;
+
+                for (int tick = runStarts[i]; tick < end; tick++)
+                {
+                    data.writeByte(runButtons[i]);
+                }
+            }
+
+            for (int i = 0; i < hashCount; i++)
+            {
+                data.writeInt(hashes[i]);
+            }
+        }
+        finally
+        {
+            data.close();
+        }
+    }
+
+    public static InputLog read(File file) throws IOException
+    {
+        DataInputStream data = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+
+        try
+        {
+            if (data.readInt() != MAGIC)
+                throw new IOException("Not an input log");
+
+            int version = data.readShort();
+            if (version < 1 || version > VERSION)
+                throw new IOException("Unsupported input log version " + version);
+
+            InputLog log = new InputLog();
+            log.hashInterval = version == 1 ? data.readShort() : data.readInt();
+            if (log.hashInterval < 1)
+                throw new IOException("Bad hash interval " + log.hashInterval);
+
+            log.seed = data.readLong();
+            log.levelId = data.readUTF();
+            log.tickRate = data.readInt();
+            log.viewWidth = data.readInt();
+            log.ground = data.readInt();
+            log.sizes.marioW = data.readInt();
+            log.sizes.marioH = data.readInt();
+            log.sizes.tubeW = data.readInt();
+            log.sizes.tubeH = data.readInt();
+            log.sizes.goombaW = data.readInt();
+            log.sizes.goombaH = data.readInt();
+            log.sizes.fireballW = data.readInt();
+            log.sizes.fireballH = data.readInt();
+            log.chunkWidth = version >= 3 ? data.readInt() : 0;
+            int tickCount = data.readInt();
+            if (tickCount < 0)
+                throw new IOException("Bad tick count " + tickCount);
+
+            for (int tick = 0; tick < tickCount; tick++)
+            {
+                log.addTick(data.readByte());
+            }
+
+            log.hashCount = log.tickCount / log.hashInterval + 1;
+            log.hashes = new int[log.hashCount];
+            for (int i = 0; i < log.hashCount; i++)
+            {
+                log.hashes[i] = data.readInt();
+            }
+
+            return log;
+        }
+        finally
+        {
+            data.close();
+        }
+    }
+}
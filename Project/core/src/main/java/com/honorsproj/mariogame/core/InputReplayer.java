@@ -0,0 +1,97 @@
+package com.honorsproj.mariogame.core;
+
+import java.io.File;
+import java.io.IOException;
+
+// Plays an InputLog back through a Model as fast as it will go and checks
+// the Model's state hash wherever the log has one. A replay that stops
+// matching means the simulation is not deterministic, or has changed since
+// the log was recorded; the tick it went wrong on is where to start looking.
+public class InputReplayer
+{
+    final InputLog log;
+    final Model model;
+    int tick;   // Ticks replayed so far
+
+    public int mismatchTick = -1;   // First tick whose hash did not match (-1 if none)
+    public double ticksPerSecond;
+
+    public InputReplayer(InputLog log, Model model)
+    {
+        this.log = log;
+        this.model = model;
+    }
+
+    public Model getModel()
+    {
+        return model;
+    }
+
+    // Replays the whole log. Returns true if every hash matched.
+    public boolean run()
+    {
+        long start = System.nanoTime();
+
+        if (model.stateHash() != log.hashAfter(0))
+        {
+            // Not the Model the log was recorded from
+            mismatchTick = 0;
+            return false;
+        }
+
+        while (tick < log.tickCount)
+        {
+            model.tick(log.buttons(tick));
+            tick++;
+
+            if (tick % log.hashInterval == 0 && model.stateHash() != log.hashAfter(tick))
+            {
+                mismatchTick = tick;
+                break;
+            }
+        }
+
+        long elapsed = Math.max(System.nanoTime() - start, 1);
+        ticksPerSecond = tick * 1e9 / elapsed;
+
+        return mismatchTick < 0;
+    }
+
+    // Finds the level a log was recorded on in levelsDir, as a converted
+    // .lvl file or a .txt source. Returns null for the built-in level.
+    public static LevelFile findLevel(String levelId, File levelsDir) throws IOException
+    {
+        if (levelId.isEmpty())
+            return null;
+
+        File binary = new File(levelsDir, levelId + ".lvl");
+        if (binary.exists())
+            return LevelFile.map(binary);
+
+        File source = new File(levelsDir, levelId + ".txt");
+        if (!source.exists())
+            throw new IOException("No level " + levelId + " in " + levelsDir);
+
+        File converted = File.createTempFile("level-" + levelId, ".lvl");
+        converted.deleteOnExit();
+        LevelConverter.convert(source, converted);
+        return LevelFile.map(converted);
+    }
+
+    // Usage: InputReplayer <log> [levels dir]
+    public static void main(String[] args) throws IOException
+    {
+        InputLog log = InputLog.read(new File(args[0]));
+        File levelsDir = new File(args.length > 1 ? args[1] : "levels");
+
+        Model model = log.createModel(findLevel(log.levelId, levelsDir));
+        InputReplayer replayer = new InputReplayer(log, model);
+        boolean matched = replayer.run();
+
+        System.out.printf("%d ticks, %.0f ticks/s, %s%n", log.tickCount, replayer.ticksPerSecond,
+                matched ? "every hash matched" : "diverged at tick " + replayer.mismatchTick);
+
+        if (!matched)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,100 @@
+package com.honorsproj.mariogame.core;
+
+// Sorts int keys, each carrying an int value, with a radix sort: four
+// passes of eight bits, skipping any pass where every key has the same
+// byte. Linear in the number of keys and allocates nothing once its arrays
+// are big enough (Arrays.sort allocates a work array for input that is
+// already nearly sorted, which per-tick input usually is). Equal keys keep
+// the order they were added in.
+final class KeySort
+{
+    int[] keys = new int[16];
+    int[] values = new int[16];
+    int size;
+
+    int[] spareKeys = new int[16];
+    int[] spareValues = new int[16];
+    final int[] counts = new int[256];
+
+    void clear()
+    {
+        size = 0;
+    }
+
+    void add(int key, int value)
+    {
+        if (size == keys.length)
+        {
+            keys = EntityStore.grow(keys, size * 2, size);
+            values = EntityStore.grow(values, size * 2, size);
+            spareKeys = new int[size * 2];
+            spareValues = new int[size * 2];
+        }
+
+        keys[size] = key;
+        values[size] = value;
+        size++;
+    }
+
+    void sort()
+    {
+        for (int shift = 0; shift < 32; shift += 8)
+        {
+            // The top byte is flipped so negative keys come first
+            int flip = shift == 24 ? 0x80 : 0;
+
+            for (int b = 0; b < 256; b++)
+            {
+                counts[b] = 0;
+            }
+            for (int i = 0; i < size; i++)
+            {
+                counts[((keys[i] >>> shift) & 0xFF) ^ flip]++;
+            }
+
+            // Nothing to do if every key landed in one bucket
+            if (size == 0 || counts[((keys[0] >>> shift) & 0xFF) ^ flip] == size)
+                continue;
+
+            int at = 0;
+            for (int b = 0; b < 256; b++)
+            {
+                int n = counts[b];
+                counts[b] = at;
+                at += n;
+            }
+
+            for (int i = 0; i < size; i++)
+            {
+                int to = counts[((keys[i] >>> shift) & 0xFF) ^ flip]++;
+                spareKeys[to] = keys[i];
+                spareValues[to] = values[i];
+            }
+
+            int[] swap = keys;
+            keys = spareKeys;
+            spareKeys = swap;
+
+            swap = values;
+            values = spareValues;
+            spareValues = swap;
+        }
+    }
+
+    // Index of the first key at or above key (size if there is none)
+    int first(int key)
+    {
+        int lo = 0, hi = size;
+
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        return lo;
+    }
+}
@@ -0,0 +1,99 @@
+package com.honorsproj.mariogame.core;
+
+// Counts how long something took, in nanoseconds, in a fixed set of
+// buckets: eight per power of two, so any value is off by at most 12.5%.
+// Recording is a few shifts and an increment, and nothing is allocated
+// after construction. Meant to be recorded by one thread; another thread
+// reading it (for an overlay) may see it slightly out of date.
+public class LatencyHistogram
+{
+    final static int SUB_BITS = 3;
+    final static int SUB = 1 << SUB_BITS;
+    final static int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+
+    final long[] counts = new long[BUCKETS];
+    long count;
+    long max;
+    long total;
+
+    public void record(long nanos)
+    {
+        if (nanos < 0)
+            nanos = 0;
+
+        counts[bucket(nanos)]++;
+        count++;
+        total += nanos;
+        if (nanos > max)
+            max = nanos;
+    }
+
+    static int bucket(long v)
+    {
+        if (v < SUB)
+            return (int)v;
+
+        int e = 63 - Long.numberOfLeadingZeros(v);
+        return (e - SUB_BITS + 1) * SUB + (int)((v >> (e - SUB_BITS)) & (SUB - 1));
+    }
+
+    // Largest value that lands in a bucket
+    static long highest(int bucket)
+    {
+        if (bucket < SUB)
+            return bucket;
+
+        int e = bucket / SUB + SUB_BITS - 1;
+        if (e >= 62)
+            return Long.MAX_VALUE;
+
+        long lowest = (long)(SUB + bucket % SUB) << (e - SUB_BITS);
+        return lowest + (1L << (e - SUB_BITS)) - 1;
+    }
+
+    // Value that p percent (0 to 100) of recorded values are at or below
+    public long percentile(double p)
+    {
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long)Math.ceil(count * p / 100.0));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(highest(i), max);
+        }
+
+        return max;
+    }
+
+    public long count()
+    {
+        return count;
+    }
+
+    public long max()
+    {
+        return max;
+    }
+
+    public long mean()
+    {
+        return count == 0 ? 0 : total / count;
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts[i] = 0;
+        }
+
+        count = 0;
+        max = 0;
+        total = 0;
+    }
+}
@@ -0,0 +1,163 @@
+package com.honorsproj.mariogame.core;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Turns text level sources into LevelFile binaries. Run at build time by
+// the :core:convertLevels task. A source has one entity per line:
+//
+//   # Comment
+//   mario 500 200
+//   tube 100 600
+//   goomba 1400 550
+//
+// Records are written sorted by x, so a level streams in from left to right.
+public class LevelConverter
+{
+    // Reads a text level source into type, x and y columns
+    static int[][] parse(File source) throws IOException
+    {
+        ArrayList<int[]> records = new ArrayList<int[]>();
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(new FileInputStream(source), "UTF-8"));
+
+        try
+        {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = in.readLine()) != null)
+            {
+                lineNumber++;
+                line = line.trim();
+
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String[] parts = line.split("\\s+");
+                int type = parts.length == 3 ? LevelFile.typeOf(parts[0]) : -1;
+
+                if (type < 0)
+                    throw new IOException(source.getName() + ":" + lineNumber
+                            + ": expected <type> <x> <y>, got \"" + line + "\"");
+
+                try
+                {
+                    records.add(new int[] { type, Integer.parseInt(parts[1]),
+                            Integer.parseInt(parts[2]) });
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new IOException(source.getName() + ":" + lineNumber
+                            + ": bad coordinate in \"" + line + "\"");
+                }
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        int n = records.size();
+        int[][] columns = new int[3][n];
+        for (int i = 0; i < n; i++)
+        {
+            int[] r = records.get(i);
+            columns[0][i] = r[0];
+            columns[1][i] = r[1];
+            columns[2][i] = r[2];
+        }
+
+        return columns;
+    }
+
+    // Writes a level file from type, x and y columns
+    public static void write(int[] types, int[] xs, int[] ys, int count, File out)
+            throws IOException
+    {
+        // Sort record indices by x (stable, so equal x keep source order)
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++)
+        {
+            order[i] = i;
+        }
+        final int[] keys = xs;
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer a, Integer b)
+            {
+                return keys[a] < keys[b] ? -1 : (keys[a] == keys[b] ? 0 : 1);
+            }
+        });
+
+        DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(out), 64 * 1024));
+
+        try
+        {
+            data.writeInt(LevelFile.MAGIC);
+            data.writeShort(LevelFile.VERSION);
+            data.writeShort(LevelFile.TYPE_NAMES.length);
+            data.writeInt(count);
+
+            for (int i = 0; i < LevelFile.TYPE_NAMES.length; i++)
+            {
+                byte[] name = LevelFile.TYPE_NAMES[i].getBytes("US-ASCII");
+                data.writeByte(name.length);
+                data.write(name);
+            }
+
+            for (int k = 0; k < count; k++)
+            {
+                int i = order[k];
+                data.writeByte(types[i]);
+                data.writeInt(xs[i]);
+                data.writeInt(ys[i]);
+            }
+        }
+        finally
+        {
+            data.close();
+        }
+    }
+
+    public static void convert(File source, File out) throws IOException
+    {
+        int[][] columns = parse(source);
+        write(columns[0], columns[1], columns[2], columns[0].length, out);
+    }
+
+    // Usage: LevelConverter <source dir> <output dir>
+    // Converts every .txt file in the source dir to a .lvl file
+    public static void main(String[] args) throws IOException
+    {
+        File sourceDir = new File(args[0]);
+        File outDir = new File(args[1]);
+        outDir.mkdirs();
+
+        File[] sources = sourceDir.listFiles();
+        if (sources == null)
+            throw new IOException("No level sources in " + sourceDir);
+
+        for (File source : sources)
+        {
+            String name = source.getName();
+            if (!name.endsWith(".txt"))
+                continue;
+
+            File out = new File(outDir, name.substring(0, name.length() - 4) + ".lvl");
+            convert(source, out);
+            System.out.println(name + " -> " + out.getPath() + " (" + out.length() + " bytes)");
+        }
+    }
+}
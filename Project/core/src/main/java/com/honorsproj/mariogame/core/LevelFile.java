@@ -0,0 +1,153 @@
+package com.honorsproj.mariogame.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Reads a level in the binary format LevelConverter writes. All numbers
+// are big-endian:
+//
+//   header   int magic ("PLVL"), short version, short type count, int record count
+//   types    per type: byte name length, name (ASCII), e.g. "tube"
+//   records  per record: byte index into the type table, int x, int y
+//
+// Records are read straight out of the buffer, which is usually a mapped
+// file, so loading makes no object per record unless the Model needs one.
+// Types this version does not know about are skipped.
+public class LevelFile
+{
+    public final static int MAGIC = 0x504C564C;    // "PLVL"
+    public final static int VERSION = 1;
+    public final static int RECORD_SIZE = 9;
+
+    // Types this version knows about, indexed by Sprite kind (fireballs
+    // are never part of a level)
+    public final static String[] TYPE_NAMES = { "mario", "tube", "goomba" };
+
+    final ByteBuffer buffer;
+    final int version;
+    final int[] types;      // Known type of each type table entry (-1 if unknown)
+    public final int recordCount;
+    final int recordStart;  // Offset of the first record
+
+    // Checks the header and type table of a level held in buffer
+    public LevelFile(ByteBuffer buffer) throws IOException
+    {
+        this.buffer = buffer;
+
+        if (buffer.limit() < 12 || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a level file");
+
+        version = buffer.getShort(4);
+        if (version < 1 || version > VERSION)
+            throw new IOException("Unsupported level file version " + version);
+
+        int typeCount = buffer.getShort(6);
+        recordCount = buffer.getInt(8);
+
+        types = new int[typeCount];
+        int at = 12;
+        for (int i = 0; i < typeCount; i++)
+        {
+            int length = buffer.get(at) & 0xFF;
+            byte[] name = new byte[length];
+            for (int j = 0; j < length; j++)
+            {
+                name[j] = buffer.get(at + 1 + j);
+            }
+            at += 1 + length;
+
+            types[i] = typeOf(new String(name, "US-ASCII"));
+        }
+
+        recordStart = at;
+        if ((long)recordStart + (long)recordCount * RECORD_SIZE > buffer.limit())
+            throw new IOException("Level file is truncated");
+    }
+
+    // Maps a level file into memory
+    public static LevelFile map(File file) throws IOException
+    {
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            FileChannel channel = in.getChannel();
+            return new LevelFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        finally
+        {
+            in.close();     // The mapping stays valid after closing
+        }
+    }
+
+    // Sprite kind for a type name (-1 if unknown)
+    static int typeOf(String name)
+    {
+        for (int i = 0; i < TYPE_NAMES.length; i++)
+        {
+            if (TYPE_NAMES[i].equals(name))
+                return i;
+        }
+
+        return -1;
+    }
+
+    public int x(int record)
+    {
+        return buffer.getInt(recordStart + record * RECORD_SIZE + 1);
+    }
+
+    public int y(int record)
+    {
+        return buffer.getInt(recordStart + record * RECORD_SIZE + 5);
+    }
+
+    // Sprite kind of a record (-1 if unknown)
+    int type(int record)
+    {
+        int index = buffer.get(recordStart + record * RECORD_SIZE) & 0xFF;
+        return index < types.length ? types[index] : -1;
+    }
+
+    // Puts everything in the level into the model. When the model is
+    // streaming, tubes and goombas go straight into its chunks as records.
+    public void addTo(Model model)
+    {
+        ChunkStreamer streamer = model.streamer;
+
+        for (int i = 0; i < recordCount; i++)
+        {
+            int x = x(i);
+            int y = y(i);
+
+            switch (type(i))
+            {
+                case Sprite.MARIO:
+                    model.mario.x = x;
+                    model.mario.y = y;
+                    model.mario.lastX = x;
+                    model.mario.lastY = y;
+                    break;
+
+                case Sprite.TUBE:
+                    if (streamer != null)
+                        streamer.addTube(x, y);
+                    else
+                        model.addSprite(new Tube(model, x, y));
+                    break;
+
+                case Sprite.GOOMBA:
+                    if (streamer != null)
+                        streamer.addGoomba(x, y);
+                    else
+                        model.addSprite(new Goomba(model, x, y));
+                    break;
+
+                default:
+                    break;  // Made by a newer converter, so skip it
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.honorsproj.mariogame.core;
+
+// MARIO CLASS
+public class Mario extends Sprite
+{
+    Model model;    // Reference to game Model for collision detection
+
+    int prevX, prevY;   // Previous position coordinates (from last frame)
+
+    int velY;   // Vertical velocity (16.16 fixed point)
+    public int frame;  // Animation frame
+    boolean fireReady;   // Keeps fireball action semi-automatic
+
+    boolean jumping;
+    int cooldownTime;
+    int jumpCooldown;
+    int maxLimit;
+    int jumpLimit;
+
+    // Vertical velocity at the start of a jump (16.16 fixed point)
+    final static int jumpVelocity = Fixed.of(-23);
+
+    public Mario(Model m, int posX, int posY)
+    {
+        model = m;
+        x = posX;
+        y = posY;
+        lastX = x;
+        lastY = y;
+        w = m.sizes.marioW;
+        h = m.sizes.marioH;
+
+        flip = false;
+
+        velY = 0;
+        frame = 0;
+        fireReady = true;
+
+        jumping = false;
+        cooldownTime = 4;
+        jumpCooldown = 0;
+        maxLimit = 9;
+        jumpLimit = maxLimit;
+    }
+
+    @Override
+    public void update()
+    {
+        if (    jumping
+                && jumpCooldown == cooldownTime
+                && jumpLimit > 0
+                && velY <= 0)
+        {
+            velY = jumpVelocity;
+            jumpLimit--;
+        }
+        // Keeps Mario from briefly clipping through the ground
+        else if (wouldPassGround(model.ground, velY))
+        {
+            landOn(model.ground);
+            velY = 0;
+        }
+        // Mario falling normally
+        else if (y + h < model.ground)
+        {
+            velY += Model.gravity;
+        }
+        else
+        {
+            velY = 0;
+        }
+
+        // Update vertical position
+        moveY(velY);
+
+        if (!jumping && jumpLimit < maxLimit && jumpCooldown == cooldownTime)
+        {
+            jumpCooldown = 0;
+            jumpLimit = maxLimit;
+        }
+
+        // Mario-Tube collision detection
+        TubeIndex tubes = model.tubes();
+        int i = tubes.first(x);
+
+        while (i < tubes.size && tubes.x[i] <= x + w)
+        {
+            if (tubes.collides(i, x, y, w, h))
+            {
+                fixCollision(tubes.x[i], tubes.y[i], tubes.w[i]);
+
+                // Mario moved, so look again, skipping tubes already checked
+                i = Math.max(tubes.first(x), i + 1);
+            }
+            else
+            {
+                i++;
+            }
+        }
+
+        // Prevents Mario from jumping midair
+        if (jumpCooldown == cooldownTime && velY == 0)
+        {
+            jumpCooldown = 0;
+        }
+
+        // jumpCooldown timer
+        if (jumpCooldown < cooldownTime && velY == 0)
+        {
+            jumpCooldown++;
+        }
+
+        // Store position to be referenced next frame during collisions
+        prevX = x;
+        prevY = y;
+    }
+
+    void fire()
+    {
+        Fireball f;
+
+        if (flip)
+        {
+            f = model.fireballs.obtain(x - w / 10,
+                    y + h / 5, true);
+        }
+        else
+        {
+            f = model.fireballs.obtain(x + w * 3 / 4,
+                    y + h / 5, false);
+        }
+
+        // Pool is empty, so this shot is dropped
+        if (f != null)
+            model.addSprite(f);
+    }
+
+    // Fixes collisions between Mario and tubes
+    void fixCollision(Sprite s)
+    {
+        fixCollision(s.x, s.y, s.w);
+    }
+
+    // Fixes a collision with the tube at (tubeX, tubeY) tubeW pixels wide
+    void fixCollision(int tubeX, int tubeY, int tubeW)
+    {
+        // Mario coming from above
+        if (prevY + h < tubeY)
+        {
+            // Corrects Mario's position
+            landOn(tubeY - 1);
+            // Stops Mario's fall
+            velY = 0;
+        }
+        // Mario coming from the right
+        else if (prevX > tubeX + tubeW)
+        {
+            int viewCorrect = x;
+
+            // Corrects Mario's position
+            x = tubeX + tubeW + 1;
+
+            // Corrects scroll position
+            viewCorrect -= x;
+            model.scrollVal -= viewCorrect;
+        }
+        // Mario coming from the left
+        else
+        {
+            int viewCorrect = x;
+
+            // Corrects Mario's position
+            x = tubeX - w - 1;
+
+            // Corrects scroll position
+            viewCorrect -= x;
+            model.scrollVal -= viewCorrect;
+        }
+    }
+
+    @Override
+    public int kind()
+    {
+        return MARIO;
+    }
+
+    @Override
+    public boolean isMario()
+    {
+        return true;
+    }
+}
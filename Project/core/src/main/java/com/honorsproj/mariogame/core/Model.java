@@ -0,0 +1,497 @@
+package com.honorsproj.mariogame.core;
+
+import java.util.ArrayList;
+
+public class Model
+{
+    public ArrayList<Sprite> sprites;
+    public Mario mario;
+
+    // Adds and removes sprites (queued while updating)
+    public EntityManager lifecycle;
+
+    public int ground;     // y coordinate of top of ground
+    public int scrollVal;  // Screen offset that changes as Mario moves
+    public int lastScrollVal;  // Screen offset at the start of the current tick
+    public int viewWidth;  // Width of the screen, for removing things that leave it
+
+    // Speed at which Mario moves and the screen scrolls
+    public final static int speed = 18;
+
+    // Downward acceleration of Mario and goombas (16.16 fixed point, 1.4 pixels per tick)
+    final static int gravity = Fixed.ofTenths(14);
+
+    SpriteSizes sizes;
+    public FireballPool fireballs;
+
+    // Collision broadphase
+    SpatialHash grid;
+    public boolean useBroadphase;  // False falls back to scanning every sprite
+    boolean gridInStep;     // False once sprites have moved without the grid being told
+    ArrayList<Sprite> nearby;   // Reused for query results
+    int nextId;
+
+    // Every tube in the level (null until needed, and after tubes change)
+    TubeIndex tubeIndex;
+
+    // Structure-of-arrays storage for everything but Mario (null when not in use)
+    EntityStore entities;
+
+    // Threads that share the EntityStore's update passes (null for one thread)
+    WorkerPool workers;
+
+    // Streams tubes and goombas in and out by chunk (null when the whole level is in play)
+    public ChunkStreamer streamer;
+
+    public Model()
+    {
+        this(new SpriteSizes());
+    }
+
+    public Model(SpriteSizes sizes)
+    {
+        this(sizes, null);
+    }
+
+    // Starts with the level in a LevelFile, or the built-in level if null
+    public Model(SpriteSizes sizes, LevelFile level)
+    {
+        this.sizes = sizes;
+        sprites = new ArrayList<Sprite>();  // ArrayList of all sprites in game
+        lifecycle = new EntityManager(this);
+
+        grid = new SpatialHash(7);  // 128 pixel cells
+        useBroadphase = true;
+        gridInStep = true;
+        nearby = new ArrayList<Sprite>();
+
+        fireballs = new FireballPool(this, 16);
+
+        mario = new Mario(this, 500, 200);  // Extra reference to Mario
+        addSprite(mario);
+
+        if (level != null)
+        {
+            level.addTo(this);
+            return;
+        }
+
+        // Add tubes
+        addSprite(new Tube(this, 100, ground + 600));
+        addSprite(new Tube(this, 1100, ground + 700));
+        addSprite(new Tube(this, 1700, ground + 400));
+
+        // Add goomba
+        addSprite(new Goomba(this, 1400, ground + 550));
+        addSprite(new Goomba(this, 1500, ground + 550));
+        addSprite(new Goomba(this, 500, ground + 550));
+        addSprite(new Goomba(this, 1600, ground + 550));
+    }
+
+    // Resizes every sprite (and every sprite made from now on) to match
+    // the bitmaps they will be drawn with
+    public void setSpriteSizes(SpriteSizes sizes)
+    {
+        this.sizes = sizes;
+
+        for (int i = 0; i < sprites.size(); i++)
+        {
+            sizes.apply(sprites.get(i));
+        }
+
+        fireballs.resize(sizes);
+        tubeIndex = null;
+
+        // Sizes decide how far queries reach, so start the grid over
+        gridInStep = false;
+
+        if (entities != null)
+            entities.refreshSizes();
+    }
+
+    // Sets the most fireballs that can be in the game at once.
+    // Only call this when no fireballs are in flight.
+    public void setFireballLimit(int limit)
+    {
+        fireballs = new FireballPool(this, limit);
+    }
+
+    // Switches between updating sprites one object at a time and updating
+    // them from an EntityStore. Meant for levels with thousands of sprites.
+    public void useEntityStore(boolean on)
+    {
+        if (on && entities == null)
+        {
+            entities = new EntityStore(sprites.size() * 2);
+            entities.load(sprites);
+        }
+        else if (!on)
+        {
+            // Sprites are kept up to date, so they can just take over again
+            entities = null;
+        }
+    }
+
+    // Splits each tick's EntityStore update across the given number of
+    // threads (this one included), or back onto this thread alone for 1.
+    // The result is the same either way. Switches the EntityStore on,
+    // since the object-at-a-time update cannot be split.
+    public void useParallelUpdate(int threads)
+    {
+        if (workers != null)
+        {
+            workers.shutdown();
+            workers = null;
+        }
+
+        if (threads > 1)
+        {
+            useEntityStore(true);
+            workers = new WorkerPool(threads - 1);
+        }
+    }
+
+    // Puts a sprite in the game (at the end of the update pass if the Model
+    // is updating) and returns its handle
+    public int addSprite(Sprite s)
+    {
+        if (s.isTube())
+            tubeIndex = null;
+
+        return lifecycle.spawn(s);
+    }
+
+    // Takes a sprite out of the game (at the end of the update pass if the
+    // Model is updating)
+    public void despawn(Sprite s)
+    {
+        lifecycle.despawn(s);
+    }
+
+    // Adds a sprite to the list, broadphase and EntityStore. Only called by
+    // the EntityManager.
+    void insert(Sprite s)
+    {
+        s.id = nextId++;
+        sprites.add(s);
+
+        if (useBroadphase)
+            grid.insert(s);
+        else
+            gridInStep = false;
+
+        if (entities != null && !s.isMario())
+            entities.add(s);
+    }
+
+    // Takes a sprite out of the broadphase and the EntityStore. Only called
+    // by the EntityManager, which takes it out of the list.
+    void forget(Sprite s)
+    {
+        if (useBroadphase)
+            grid.remove(s);
+        else
+            gridInStep = false;
+
+        // Entities frozen by the ChunkStreamer have already left the store
+        if (entities != null && !s.isMario() && s.slot >= 0)
+            entities.remove(s.slot);
+    }
+
+    // Returns the index of every tube in the level, streamed in or not,
+    // building it first if tubes were added or resized since the last call
+    TubeIndex tubes()
+    {
+        if (tubeIndex == null)
+        {
+            TubeIndex.Builder builder = new TubeIndex.Builder();
+
+            for (int i = 0; i < sprites.size(); i++)
+            {
+                Sprite s = sprites.get(i);
+                if (s.isTube())
+                    builder.add(s.x, s.y, s.w, s.h);
+            }
+
+            if (streamer != null)
+                streamer.addTubes(builder);
+
+            tubeIndex = builder.build();
+        }
+
+        return tubeIndex;
+    }
+
+    // Splits the level into chunks chunkWidth pixels wide and from now on
+    // only keeps the chunks near the screen in the game
+    public ChunkStreamer useStreaming(int chunkWidth)
+    {
+        streamer = new ChunkStreamer(this, chunkWidth);
+        streamer.takeAll();
+        streamer.update();
+        return streamer;
+    }
+
+    // True if the broadphase grid matches where the sprites are. The grid
+    // is not kept up to date with the broadphase off, and is rebuilt at the
+    // next update once it is back on.
+    boolean gridReady()
+    {
+        return useBroadphase && gridInStep;
+    }
+
+    // Returns the sprites that might collide with s, in no particular order.
+    // The list is reused, so it is only good until the next call.
+    ArrayList<Sprite> nearby(Sprite s)
+    {
+        if (!gridReady())
+            return sprites;
+
+        nearby.clear();
+        grid.query(s.x, s.y, s.x + Math.max(s.w, 0), s.y + Math.max(s.h, 0), nearby);
+        return nearby;
+    }
+
+    // Adds the sprites that overlap the box [x0, x1] x [y0, y1] to out, in
+    // the order they were added to the game (which is the order they are
+    // drawn in). Uses the broadphase grid when it is up to date, so the
+    // cost depends on the size of the box, not the level.
+    public void spritesIn(int x0, int y0, int x1, int y1, ArrayList<Sprite> out)
+    {
+        int start = out.size();
+
+        if (gridReady())
+        {
+            grid.query(x0, y0, x1, y1, out);
+
+            // The grid works in whole cells, so drop what only shares a cell
+            int n = start;
+            for (int i = start; i < out.size(); i++)
+            {
+                Sprite s = out.get(i);
+                if (overlaps(s, x0, y0, x1, y1))
+                    out.set(n++, s);
+            }
+
+            while (out.size() > n)
+            {
+                out.remove(out.size() - 1);
+            }
+        }
+        else
+        {
+            for (int i = 0; i < sprites.size(); i++)
+            {
+                Sprite s = sprites.get(i);
+                if (overlaps(s, x0, y0, x1, y1))
+                    out.add(s);
+            }
+        }
+
+        // Despawning moves sprites around the list, so neither is in id order yet
+        SpatialHash.sortById(out, start);
+    }
+
+    static boolean overlaps(Sprite s, int x0, int y0, int x1, int y1)
+    {
+        return !(s.x + s.w < x0) && !(s.x > x1) && !(s.y + s.h < y0) && !(s.y > y1);
+    }
+
+    // Runs one whole game tick with the given Input buttons held
+    public void tick(int buttons)
+    {
+        savePositions();
+        applyInput(buttons);
+        update();
+    }
+
+    // Remembers where everything was before the tick moves it, so the
+    // view can interpolate between the last two ticks
+    public void savePositions()
+    {
+        for (int i = 0; i < sprites.size(); i++)
+        {
+            Sprite s = sprites.get(i);
+            s.lastX = s.x;
+            s.lastY = s.y;
+        }
+
+        lastScrollVal = scrollVal;
+    }
+
+    // Moves Mario and sets his jump and fire state from the buttons held
+    public void applyInput(int buttons)
+    {
+        if ((buttons & Input.MOVE_RIGHT) != 0)
+        {
+            // Move to right
+            mario.x += speed;
+            // Animate Mario
+            mario.frame++;
+            mario.frame %= 5;
+            // Don't flip Mario
+            mario.flip = false;
+
+            // Scroll to right
+            scrollVal += speed;
+        }
+        else if ((buttons & Input.MOVE_LEFT) != 0)
+        {
+            // Move to left
+            mario.x -= speed;
+            // Animate Mario
+            mario.frame++;
+            mario.frame %= 5;
+            // Flip Mario
+            mario.flip = true;
+
+            // Scroll to left
+            scrollVal -= speed;
+        }
+
+        mario.jumping = (buttons & Input.JUMP) != 0;
+
+        if ((buttons & Input.FIRE) != 0)
+        {
+            if (mario.fireReady)
+            {
+                mario.fire();
+                mario.fireReady = false;
+            }
+        }
+        else
+        {
+            mario.fireReady = true;   // Keeps fireballs semi-automatic
+        }
+    }
+
+    // Hash of everything a tick can change, for checking that a replay
+    // follows the recorded game exactly. Sprites are hashed in list order,
+    // which is itself part of the state.
+    public int stateHash()
+    {
+        int h = mix(0x811C9DC5, scrollVal);
+        h = mix(h, sprites.size());
+        h = mix(h, mario.velY);
+        h = mix(h, mario.subY);
+        h = mix(h, mario.frame);
+        h = mix(h, mario.jumpCooldown);
+        h = mix(h, mario.jumpLimit);
+        h = mix(h, mario.fireReady ? 1 : 0);
+
+        for (int i = 0; i < sprites.size(); i++)
+        {
+            Sprite s = sprites.get(i);
+            h = mix(h, s.id);
+            h = mix(h, s.x);
+            h = mix(h, s.y);
+            h = mix(h, s.subY);
+            h = mix(h, (s.flip ? 1 : 0) | (s.kill ? 2 : 0));
+
+            if (s.isGoomba())
+            {
+                Goomba g = (Goomba)s;
+                h = mix(h, g.velY);
+                h = mix(h, g.dying ? g.deathTimer : -1);
+            }
+            else if (s.isFireball())
+            {
+                h = mix(h, ((Fireball)s).velY);
+            }
+        }
+
+        return h;
+    }
+
+    // One FNV-1a step per byte of v
+    static int mix(int h, int v)
+    {
+        for (int shift = 0; shift < 32; shift += 8)
+        {
+            h = (h ^ ((v >>> shift) & 0xFF)) * 0x01000193;
+        }
+        return h;
+    }
+
+    public void update()
+    {
+        if (streamer != null)
+            streamer.update();
+
+        // Sprites added or removed from here on wait for the end of the pass
+        lifecycle.deferring = true;
+
+        if (entities != null)
+        {
+            mario.update();
+            entities.update(this, workers);
+
+            // The store moves its sprites without the grid, so catch the
+            // grid up afterwards to keep culling to what is on screen
+            if (!useBroadphase)
+            {
+                gridInStep = false;
+            }
+            else if (!gridInStep)
+            {
+                grid.rebuild(sprites);
+                gridInStep = true;
+            }
+            else
+            {
+                for (int i = 0; i < sprites.size(); i++)
+                {
+                    grid.update(sprites.get(i));
+                }
+            }
+        }
+        else
+        {
+            // Otherwise the grid is kept up to date sprite by sprite below,
+            // unless it is off, when sprites move without it
+            if (!useBroadphase)
+            {
+                gridInStep = false;
+            }
+            else if (!gridInStep)
+            {
+                grid.rebuild(sprites);
+                gridInStep = true;
+            }
+
+            // Fireballs move after everything else, so goombas look for
+            // them where they were at the start of the tick (the same as
+            // the EntityStore's passes, which can then run in any order)
+            updateSprites(false);
+            updateSprites(true);
+        }
+
+        lifecycle.deferring = false;
+        lifecycle.flush();
+    }
+
+    // Updates every sprite that is or is not a fireball, in list order
+    void updateSprites(boolean fireballs)
+    {
+        for (int i = 0; i < sprites.size(); i++)
+        {
+            Sprite s = sprites.get(i);
+
+            if (s.isFireball() != fireballs)
+                continue;
+
+            // Kills sprite if necessary
+            if (s.kill)
+            {
+                despawn(s);
+            }
+            // Updates sprite otherwise
+            else
+            {
+                s.update();
+                if (useBroadphase)
+                    grid.update(s);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.honorsproj.mariogame.core;
+
+import java.util.ArrayList;
+
+// Everything the renderer needs from one tick, copied out of the Model so
+// the render thread never reads the Model while it is being updated. Only
+// sprites near the screen are copied. Arrays are reused between captures,
+// so capturing allocates nothing once they are big enough.
+public class RenderSnapshot
+{
+    public int count;       // Sprites in this snapshot
+    public int total;       // Sprites in the game, including culled ones
+    public int[] kind = new int[64];    // Sprite.MARIO, Sprite.TUBE and so on
+    public int[] x = new int[64], y = new int[64];
+    public int[] lastX = new int[64], lastY = new int[64];
+    public boolean[] flip = new boolean[64];
+    public int[] frame = new int[64];   // Mario's walking frame, or 1 for a dying goomba
+
+    public int scrollVal;
+    public int lastScrollVal;
+    public long tick;       // Ticks run before this snapshot
+    public long tickNanos;  // System.nanoTime() the tick was due at
+
+    final ArrayList<Sprite> visible = new ArrayList<Sprite>();  // Reused when capturing
+
+    // Copies the sprites that overlap [x0, x1] x [y0, y1] out of the model
+    public void capture(Model model, int x0, int y0, int x1, int y1)
+    {
+        visible.clear();
+        model.spritesIn(x0, y0, x1, y1, visible);
+
+        int n = visible.size();
+        if (n > kind.length)
+            grow(n);
+
+        for (int i = 0; i < n; i++)
+        {
+            Sprite s = visible.get(i);
+
+            x[i] = s.x;
+            y[i] = s.y;
+            lastX[i] = s.lastX;
+            lastY[i] = s.lastY;
+            flip[i] = s.flip;
+            kind[i] = s.kind();
+            frame[i] = 0;
+
+            if (s.isMario())
+                frame[i] = ((Mario)s).frame;
+            else if (s.isGoomba())
+                frame[i] = ((Goomba)s).dying ? 1 : 0;
+        }
+
+        count = n;
+        total = model.sprites.size();
+        scrollVal = model.scrollVal;
+        lastScrollVal = model.lastScrollVal;
+    }
+
+    void grow(int n)
+    {
+        int size = Math.max(n, kind.length * 2);
+
+        kind = new int[size];
+        x = new int[size];
+        y = new int[size];
+        lastX = new int[size];
+        lastY = new int[size];
+        flip = new boolean[size];
+        frame = new int[size];
+    }
+}
@@ -0,0 +1,172 @@
+package com.honorsproj.mariogame.core;
+
+import java.util.Locale;
+
+// Runs the simulation headless for millions of ticks and watches for
+// anything that keeps growing: sprites that are never removed, memory
+// that is never freed, or ticks that get slower the longer the game runs.
+// Every sampleInterval ticks it records the sprite count, the heap in use
+// after a garbage collection and the mean tick time, then fits a
+// straight line through each series. A slope past its limit fails the run.
+//
+// The default interval is one full cycle of HeadlessDriver.walkAndFire, so
+// a game that is not leaking comes back to the same sprite count at every
+// sample and its sprite slope is exactly zero.
+public class SoakHarness
+{
+    // Limits, per million ticks
+    public double maxSpriteSlope = 1;               // Sprites
+    public double maxHeapSlope = 4 * 1024 * 1024;   // Bytes
+    public double maxLatencySlope = 0.5;            // Fraction of the average tick time
+
+    public int sampleInterval = 3600;   // Ticks between samples
+    public double warmup = 0.2;         // Fraction of samples left out of the fit (JIT, first GCs)
+
+    final HeadlessDriver driver;
+    final LatencyHistogram window = new LatencyHistogram();    // Tick times since the last sample
+
+    // Samples
+    long[] ticks = new long[0];
+    double[] sprites = new double[0];
+    double[] heap = new double[0];
+    double[] latency = new double[0];   // Mean tick time in nanoseconds (finer than
+                                        // a histogram percentile, so trends show sooner)
+    int sampleCount;
+
+    // Results of the last check()
+    public double spriteSlope, heapSlope, latencySlope;
+
+    public SoakHarness(HeadlessDriver driver)
+    {
+        this.driver = driver;
+    }
+
+    // Runs n ticks, sampling as it goes, and returns true if nothing grew
+    // past its limit
+    public boolean run(long n)
+    {
+        int samples = (int)(n / sampleInterval);
+        ticks = new long[samples];
+        sprites = new double[samples];
+        heap = new double[samples];
+        latency = new double[samples];
+        sampleCount = 0;
+
+        Runtime runtime = Runtime.getRuntime();
+        Model model = driver.getModel();
+
+        for (int s = 0; s < samples; s++)
+        {
+            window.reset();
+
+            for (int i = 0; i < sampleInterval; i++)
+            {
+                long start = System.nanoTime();
+                driver.step();
+                window.record(System.nanoTime() - start);
+            }
+
+            System.gc();
+
+            ticks[s] = driver.getTick();
+            sprites[s] = model.sprites.size();
+            heap[s] = runtime.totalMemory() - runtime.freeMemory();
+            latency[s] = window.mean();
+            sampleCount++;
+        }
+
+        return check();
+    }
+
+    // Fits the samples after the warmup and compares the slopes to the limits
+    public boolean check()
+    {
+        int from = (int)(sampleCount * warmup);
+
+        spriteSlope = slope(ticks, sprites, from, sampleCount) * 1e6;
+        heapSlope = slope(ticks, heap, from, sampleCount) * 1e6;
+        latencySlope = slope(ticks, latency, from, sampleCount) * 1e6
+                / Math.max(mean(latency, from, sampleCount), 1);
+
+        return spriteSlope <= maxSpriteSlope
+                && heapSlope <= maxHeapSlope
+                && latencySlope <= maxLatencySlope;
+    }
+
+    // Least-squares slope of ys against xs over samples from to to - 1
+    static double slope(long[] xs, double[] ys, int from, int to)
+    {
+        int n = to - from;
+        if (n < 2)
+            return 0;
+
+        double meanX = 0, meanY = 0;
+        for (int i = from; i < to; i++)
+        {
+            meanX += xs[i];
+            meanY += ys[i];
+        }
+        meanX /= n;
+        meanY /= n;
+
+        double covariance = 0, variance = 0;
+        for (int i = from; i < to; i++)
+        {
+            double dx = xs[i] - meanX;
+            covariance += dx * (ys[i] - meanY);
+            variance += dx * dx;
+        }
+
+        return variance == 0 ? 0 : covariance / variance;
+    }
+
+    static double mean(double[] ys, int from, int to)
+    {
+        double sum = 0;
+        for (int i = from; i < to; i++)
+        {
+            sum += ys[i];
+        }
+        return to > from ? sum / (to - from) : 0;
+    }
+
+    public String[] report()
+    {
+        int last = sampleCount - 1;
+
+        return new String[] {
+            String.format(Locale.US, "%d ticks, %d samples", driver.getTick(), sampleCount),
+            String.format(Locale.US, "sprites  last %.0f, slope %.2f per Mtick (limit %.2f)",
+                    last >= 0 ? sprites[last] : 0, spriteSlope, maxSpriteSlope),
+            String.format(Locale.US, "heap     last %.1f MB, slope %.2f MB per Mtick (limit %.2f)",
+                    last >= 0 ? heap[last] / 1048576 : 0, heapSlope / 1048576,
+                    maxHeapSlope / 1048576),
+            String.format(Locale.US,
+                    "tick     last %.2f us, slope %+.1f%% per Mtick (limit %.1f%%)",
+                    last >= 0 ? latency[last] / 1e3 : 0, latencySlope * 100,
+                    maxLatencySlope * 100),
+        };
+    }
+
+    // Usage: SoakHarness [ticks]
+    public static void main(String[] args)
+    {
+        long ticks = args.length > 0 ? Long.parseLong(args[0]) : 5000000;
+
+        SoakHarness soak = new SoakHarness(new HeadlessDriver(HeadlessDriver.createModel(),
+                HeadlessDriver.walkAndFire));
+        boolean passed = soak.run(ticks);
+
+        String[] lines = soak.report();
+        for (int i = 0; i < lines.length; i++)
+        {
+            System.out.println(lines[i]);
+        }
+
+        if (!passed)
+        {
+            System.out.println("FAILED: something grew past its limit");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.honorsproj.mariogame.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Uniform grid broadphase. Each sprite is filed under the square cell its
+// top left corner is in, so a collision check only has to look at sprites
+// in the same few cells instead of every sprite in the game. Queries reach
+// back by the widest and tallest sprite filed so far to find sprites that
+// start in an earlier cell and stretch into the box.
+//
+// Cells are looked up by their coordinates in an open-addressed table that
+// doubles as it fills, so a cell only ever holds sprites that are really in
+// it, however many sprites there are. Each sprite remembers its cell and
+// its place there, so moving or removing one costs O(1). A cell is taken
+// out of the table as soon as its last sprite leaves and kept for reuse,
+// so sprites moving into new cells allocate nothing once play settles.
+class SpatialHash
+{
+    // Sprites whose top left corner is in one cell
+    final static class Cell
+    {
+        int cx, cy;
+        Sprite[] sprites = new Sprite[4];
+        int size;
+        Cell nextSpare;     // Next empty cell waiting to be reused
+    }
+
+    final int cellShift;    // Cells are (1 << cellShift) pixels square
+
+    Cell[] table = new Cell[64];    // Length is a power of two
+    int used;                       // Cells in the table
+    Cell spare;                     // Empty cells out of the table, for reuse
+    int maxW, maxH;                 // Largest sprite size filed since the last rebuild
+
+    SpatialHash(int cellShift)
+    {
+        this.cellShift = cellShift;
+    }
+
+    // Table slot to start looking for a cell at
+    int hash(int cx, int cy)
+    {
+        int h = (cx * 73856093) ^ (cy * 19349663);
+        return (h ^ (h >>> 16)) & (table.length - 1);
+    }
+
+    // Returns the cell at (cx, cy), or null if nothing has been filed there
+    Cell find(int cx, int cy)
+    {
+        int mask = table.length - 1;
+
+        for (int i = hash(cx, cy); table[i] != null; i = (i + 1) & mask)
+        {
+            Cell c = table[i];
+            if (c.cx == cx && c.cy == cy)
+                return c;
+        }
+
+        return null;
+    }
+
+    // Returns the cell at (cx, cy), adding it if it is not there yet
+    Cell cell(int cx, int cy)
+    {
+        Cell c = find(cx, cy);
+        if (c != null)
+            return c;
+
+        // Keep the table at most half full so probe runs stay short
+        if ((used + 1) * 2 > table.length)
+            resize();
+
+        c = spare;
+        if (c != null)
+            spare = c.nextSpare;
+        else
+            c = new Cell();
+
+        c.cx = cx;
+        c.cy = cy;
+        c.nextSpare = null;
+        place(c);
+        used++;
+        return c;
+    }
+
+    // Takes an empty cell out of the table and keeps it for reuse. Cells
+    // after it in its probe run are shifted back, so lookups still find
+    // them without leaving a marker behind.
+    void release(Cell c)
+    {
+        int mask = table.length - 1;
+        int i = hash(c.cx, c.cy);
+
+        while (table[i] != c)
+        {
+            i = (i + 1) & mask;
+        }
+
+        table[i] = null;
+        used--;
+
+        for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask)
+        {
+            // A cell can move back to the hole only if its home slot is
+            // not between the hole and where it is now
+            int home = hash(table[j].cx, table[j].cy);
+            boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+
+            if (!between)
+            {
+                table[i] = table[j];
+                table[j] = null;
+                i = j;
+            }
+        }
+
+        c.nextSpare = spare;
+        spare = c;
+    }
+
+    void place(Cell c)
+    {
+        int mask = table.length - 1;
+        int i = hash(c.cx, c.cy);
+
+        while (table[i] != null)
+        {
+            i = (i + 1) & mask;
+        }
+
+        table[i] = c;
+    }
+
+    // Moves the cells into a table twice the size
+    void resize()
+    {
+        Cell[] old = table;
+        table = new Cell[old.length * 2];
+
+        for (int i = 0; i < old.length; i++)
+        {
+            if (old[i] != null)
+                place(old[i]);
+        }
+    }
+
+    // Empties the grid, keeping its cells for reuse
+    void clear()
+    {
+        for (int i = 0; i < table.length; i++)
+        {
+            Cell c = table[i];
+            if (c == null)
+                continue;
+
+            // Sprites forget the cell, so it can be reused safely
+            for (int j = 0; j < c.size; j++)
+            {
+                c.sprites[j].cell = null;
+                c.sprites[j] = null;
+            }
+            c.size = 0;
+            c.nextSpare = spare;
+            spare = c;
+            table[i] = null;
+        }
+
+        used = 0;
+        maxW = 0;
+        maxH = 0;
+    }
+
+    // Clears the grid and adds every sprite in the list
+    void rebuild(ArrayList<Sprite> sprites)
+    {
+        clear();
+
+        for (int i = 0; i < sprites.size(); i++)
+        {
+            insert(sprites.get(i));
+        }
+    }
+
+    void insert(Sprite s)
+    {
+        // Shifting right rounds down, so negative positions work too
+        Cell c = cell(s.x >> cellShift, s.y >> cellShift);
+
+        if (c.size == c.sprites.length)
+            c.sprites = Arrays.copyOf(c.sprites, c.size * 2);
+
+        s.cell = c;
+        s.cellIndex = c.size;
+        c.sprites[c.size++] = s;
+
+        // Sprites without a size yet are treated as a point
+        maxW = Math.max(maxW, s.w);
+        maxH = Math.max(maxH, s.h);
+    }
+
+    void remove(Sprite s)
+    {
+        Cell c = s.cell;
+        if (c == null)
+            return;
+
+        // Order within a cell does not matter
+        Sprite last = c.sprites[--c.size];
+        c.sprites[s.cellIndex] = last;
+        last.cellIndex = s.cellIndex;
+        c.sprites[c.size] = null;
+
+        s.cell = null;
+
+        if (c.size == 0)
+            release(c);
+    }
+
+    // Moves a sprite to a new cell if it has crossed a cell border
+    void update(Sprite s)
+    {
+        Cell c = s.cell;
+
+        if (c == null || (s.x >> cellShift) != c.cx || (s.y >> cellShift) != c.cy)
+        {
+            remove(s);
+            insert(s);
+        }
+    }
+
+    // Adds every sprite that might overlap the box [x0, x1] x [y0, y1] to
+    // out, once each and in no particular order. Results are only
+    // candidates; callers still check collidesWith().
+    void query(int x0, int y0, int x1, int y1, ArrayList<Sprite> out)
+    {
+        int cx0 = (x0 - maxW) >> cellShift;
+        int cy0 = (y0 - maxH) >> cellShift;
+        int cx1 = x1 >> cellShift;
+        int cy1 = y1 >> cellShift;
+
+        for (int cx = cx0; cx <= cx1; cx++)
+        {
+            for (int cy = cy0; cy <= cy1; cy++)
+            {
+                Cell c = find(cx, cy);
+                if (c == null)
+                    continue;
+
+                for (int i = 0; i < c.size; i++)
+                {
+                    out.add(c.sprites[i]);
+                }
+            }
+        }
+    }
+
+    // Heap sorts out[from..] by id, in place
+    static void sortById(ArrayList<Sprite> out, int from)
+    {
+        int n = out.size() - from;
+
+        for (int i = n / 2 - 1; i >= 0; i--)
+        {
+            siftDown(out, from, i, n);
+        }
+
+        for (int end = n - 1; end > 0; end--)
+        {
+            Sprite top = out.get(from);
+            out.set(from, out.get(from + end));
+            out.set(from + end, top);
+            siftDown(out, from, 0, end);
+        }
+    }
+
+    static void siftDown(ArrayList<Sprite> out, int from, int i, int n)
+    {
+        Sprite s = out.get(from + i);
+
+        while (true)
+        {
+            int child = 2 * i + 1;
+            if (child >= n)
+                break;
+
+            if (child + 1 < n && out.get(from + child + 1).id > out.get(from + child).id)
+                child++;
+
+            if (out.get(from + child).id <= s.id)
+                break;
+
+            out.set(from + i, out.get(from + child));
+            i = child;
+        }
+
+        out.set(from + i, s);
+    }
+}
@@ -0,0 +1,94 @@
+package com.honorsproj.mariogame.core;
+
+// SPRITE CLASS
+public abstract class Sprite
+{
+    // Kinds of sprite, as kind() returns them. Level files, render
+    // snapshots, ChunkStreamer records and the EntityStore all use these.
+    public final static int MARIO = 0, TUBE = 1, GOOMBA = 2, FIREBALL = 3;
+    public final static int KINDS = 4;
+
+    public int x, y;   // Position Coordinates
+    public int w, h;   // Size of bitmap (and thus sprite)
+    public boolean flip;   // True if sprite faces left
+    public boolean kill;   // Marks sprite to be removed from game
+    public int lastX, lastY;   // Position at the start of the current tick (for interpolation)
+    int subY;   // Fraction of a pixel below y (16.16 fixed point, see Fixed)
+    public int id;         // Order in which the sprite was added to the game
+
+    // Bookkeeping for Model's SpatialHash: the cell the sprite is filed
+    // under and its place in that cell
+    SpatialHash.Cell cell;
+    int cellIndex;
+
+    int slot;   // Index in Model's EntityStore, when one is in use
+
+    // Bookkeeping for Model's EntityManager
+    public int handle;      // Generational handle (0 when not in the game)
+    int index = -1;         // Place in the sprite list
+    boolean spawning;       // Queued to enter the game
+    boolean despawning;     // Queued to leave the game
+
+    public abstract void update();
+
+    // Moves down by a 16.16 fixed-point velocity, carrying the fraction over
+    void moveY(int velY)
+    {
+        long position = Fixed.position(y, subY) + velY;
+        y = Fixed.pixels(position);
+        subY = Fixed.fraction(position);
+    }
+
+    // True if falling at velY would take the sprite past the top of the ground
+    boolean wouldPassGround(int ground, int velY)
+    {
+        return Fixed.position(ground - h, 0) - Fixed.position(y, subY) < velY;
+    }
+
+    // Puts the bottom of the sprite on the line at groundY
+    void landOn(int groundY)
+    {
+        y = groundY - h;
+        subY = 0;
+    }
+
+    // One of the kinds above, or -1 for a sprite that is none of them
+    public int kind()
+    {
+        return -1;
+    }
+
+    public boolean isMario()
+    {
+        return false;
+    }
+
+    public boolean isTube()
+    {
+        return false;
+    }
+
+    public boolean isFireball()
+    {
+        return false;
+    }
+
+    public boolean isGoomba()
+    {
+        return false;
+    }
+
+    // Returns true iff the two sprites collide together
+    public boolean collidesWith(Sprite s)
+    {
+        if (!(x + w < s.x)
+            && !(x > s.x + s.w)
+            && !(y + h < s.y)
+            && !(y > s.y + s.h))
+        {
+            return true;
+        }
+        else
+            return false;
+    }
+}
@@ -0,0 +1,37 @@
+package com.honorsproj.mariogame.core;
+
+// Width and height of each kind of sprite. The game view measures these from
+// its bitmaps; the defaults match the drawables at mdpi so the simulation can
+// run without any bitmaps at all.
+public class SpriteSizes
+{
+    public int marioW = 45, marioH = 71;
+    public int tubeW = 55, tubeH = 400;
+    public int goombaW = 36, goombaH = 42;
+    public int fireballW = 28, fireballH = 28;
+
+    // Gives a sprite the size for its kind
+    void apply(Sprite s)
+    {
+        if (s.isMario())
+        {
+            s.w = marioW;
+            s.h = marioH;
+        }
+        else if (s.isTube())
+        {
+            s.w = tubeW;
+            s.h = tubeH;
+        }
+        else if (s.isGoomba())
+        {
+            s.w = goombaW;
+            s.h = goombaH;
+        }
+        else if (s.isFireball())
+        {
+            s.w = fireballW;
+            s.h = fireballH;
+        }
+    }
+}
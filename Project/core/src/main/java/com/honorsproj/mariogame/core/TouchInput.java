@@ -0,0 +1,142 @@
+package com.honorsproj.mariogame.core;
+
+// Touch events on their way from the UI thread to the simulation thread.
+// The UI thread adds pointer events to a ring buffer of plain arrays; once
+// per tick the simulation thread drains the events that happened before
+// the tick was due and turns every finger on the screen into Input
+// buttons. Only one thread adds and only one drains, so the two counters
+// are all the coordination needed, and nothing is allocated per event.
+//
+// A button tapped and let go between two ticks still counts as held for
+// the tick that drains the tap, so short taps are never lost. Moves only
+// change where a finger is held.
+public class TouchInput
+{
+    // Event actions
+    public final static int DOWN = 0;
+    public final static int MOVE = 1;
+    public final static int UP = 2;
+
+    public final static int maxPointers = 10;
+
+    // Ring buffer (capacity is a power of two)
+    final int mask;
+    final int[] action;
+    final int[] pointer;
+    final float[] xs, ys;
+    final long[] times;
+    volatile long written;  // Events added so far (UI thread)
+    volatile long read;     // Events drained so far (simulation thread)
+
+    // Fingers on the screen as of the last drain (simulation thread only)
+    final boolean[] down = new boolean[maxPointers];
+    final float[] px = new float[maxPointers];
+    final float[] py = new float[maxPointers];
+
+    // Stats
+    public volatile int dropped;   // Events lost because the ring was full
+
+    public TouchInput(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mask = size - 1;
+        action = new int[size];
+        pointer = new int[size];
+        xs = new float[size];
+        ys = new float[size];
+        times = new long[size];
+    }
+
+    // Adds an event. Only call from one thread. Time is in System.nanoTime()
+    // units. Returns false (and drops the event) if the ring is full.
+    public boolean add(int what, int pointerId, float x, float y, long time)
+    {
+        long n = written;
+
+        if (n - read > mask)
+        {
+            dropped++;
+            return false;
+        }
+
+        int i = (int)n & mask;
+        action[i] = what;
+        pointer[i] = pointerId;
+        xs[i] = x;
+        ys[i] = y;
+        times[i] = time;
+
+        written = n + 1;    // Publishes the event
+        return true;
+    }
+
+    // Applies every event that happened at or before dueNanos and returns
+    // the Input buttons for the tick. Only call from one thread.
+    public int drain(long dueNanos, int sWidth, int sHeight)
+    {
+        int pressed = 0;    // Buttons a finger came down on during the drain
+        long n = read;
+        long end = written;
+
+        while (n < end)
+        {
+            int i = (int)n & mask;
+
+            // Later events belong to later ticks
+            if (times[i] > dueNanos)
+                break;
+
+            int id = pointer[i];
+            if (id >= 0 && id < maxPointers)
+            {
+                if (action[i] == UP)
+                {
+                    down[id] = false;
+                }
+                else
+                {
+                    down[id] = true;
+                    px[id] = xs[i];
+                    py[id] = ys[i];
+
+                    // Only a finger coming down latches its buttons. A finger
+                    // sliding across a button on its way elsewhere does not.
+                    if (action[i] == DOWN)
+                        pressed |= TouchLayout.buttonsAt(xs[i], ys[i], sWidth, sHeight);
+                }
+            }
+
+            n++;
+        }
+
+        read = n;   // Frees the drained slots
+
+        return pressed | held(sWidth, sHeight);
+    }
+
+    // Buttons under the fingers that are on the screen now
+    int held(int sWidth, int sHeight)
+    {
+        int buttons = 0;
+
+        for (int id = 0; id < maxPointers; id++)
+        {
+            if (down[id])
+                buttons |= TouchLayout.buttonsAt(px[id], py[id], sWidth, sHeight);
+        }
+
+        return buttons;
+    }
+
+    // Lifts every finger and drops events not drained yet (when the game
+    // resumes after a pause). Only call from the draining thread.
+    public void clear()
+    {
+        read = written;
+
+        for (int id = 0; id < maxPointers; id++)
+        {
+            down[id] = false;
+        }
+    }
+}
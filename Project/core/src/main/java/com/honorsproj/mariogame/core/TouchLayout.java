@@ -0,0 +1,49 @@
+package com.honorsproj.mariogame.core;
+
+// Where the on-screen buttons are. Moving is the bottom corners, jumping the
+// outer top corners and firing the inner top corners.
+public final class TouchLayout
+{
+    private TouchLayout()
+    {
+    }
+
+    // Returns the Input buttons under a touch at (x, y) on a screen of the
+    // given size. A negative x means no touch.
+    public static int buttonsAt(float x, float y, int sWidth, int sHeight)
+    {
+        int buttons = 0;
+
+        // Tap bottom right corner
+        if (x > sWidth * 0.78 && y > sHeight / 2)
+        {
+            buttons |= Input.MOVE_RIGHT;
+        }
+        // Tap bottom left corner
+        else if (x < sWidth * 0.22 && y > sHeight / 2 && x >= 0)
+        {
+            buttons |= Input.MOVE_LEFT;
+        }
+
+        // Tap one of the two jump buttons
+        if((x < sWidth * 0.11 && y < sHeight / 2 && x > 0)
+                || (x > sWidth * 0.89 && y < sHeight / 2))
+        {
+            buttons |= Input.JUMP;
+        }
+
+        // Tap one of the two fireball buttons
+        if (    (x > sWidth * 0.11
+                && x < sWidth * 0.22   // Left fire button
+                && y < sHeight / 2)
+                ||
+                (x < sWidth * 0.89
+                && x > sWidth * 0.78   // Right fire button
+                && y < sHeight / 2))
+        {
+            buttons |= Input.FIRE;
+        }
+
+        return buttons;
+    }
+}
@@ -0,0 +1,57 @@
+package com.honorsproj.mariogame.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands values from one writer thread to one reader thread without either
+// ever waiting. There are three buffers: the writer fills one, the reader
+// holds one, and the third is the latest published value. Publishing and
+// taking both swap with that third buffer in a single atomic step, so a
+// buffer the reader holds is never written until it gives it back.
+public class TripleBuffer<T>
+{
+    final static int FRESH = 4;     // Set when the middle buffer has not been taken yet
+    final static int INDEX = 3;
+
+    final T[] buffers;
+    final AtomicInteger middle = new AtomicInteger(1);
+    int back = 0;   // Only touched by the writer
+    int front = 2;  // Only touched by the reader
+
+    public TripleBuffer(T a, T b, T c)
+    {
+        @SuppressWarnings("unchecked")
+        T[] buffers = (T[])new Object[] { a, b, c };
+        this.buffers = buffers;
+    }
+
+    // The buffer the writer should fill next
+    public T back()
+    {
+        return buffers[back];
+    }
+
+    // Makes the back buffer the latest value and gets a new back buffer
+    public void publish()
+    {
+        back = middle.getAndSet(back | FRESH) & INDEX;
+    }
+
+    // Returns the latest published value. The reader can keep using it
+    // until the next call. Returns the same value again if nothing new has
+    // been published, or the reader's initial buffer if nothing ever has.
+    public T latest()
+    {
+        if ((middle.get() & FRESH) != 0)
+        {
+            front = middle.getAndSet(front) & INDEX;
+        }
+
+        return buffers[front];
+    }
+
+    // True if latest() would return something new
+    public boolean hasNew()
+    {
+        return (middle.get() & FRESH) != 0;
+    }
+}
@@ -0,0 +1,32 @@
+package com.honorsproj.mariogame.core;
+
+// TUBE CLASS
+public class Tube extends Sprite
+{
+    public Tube(Model m, int posX, int posY)
+    {
+        x = posX;
+        y = posY;
+        lastX = x;
+        lastY = y;
+        w = m.sizes.tubeW;
+        h = m.sizes.tubeH;
+    }
+
+    @Override
+    public void update()
+    {
+    }
+
+    @Override
+    public int kind()
+    {
+        return TUBE;
+    }
+
+    @Override
+    public boolean isTube()
+    {
+        return true;
+    }
+}
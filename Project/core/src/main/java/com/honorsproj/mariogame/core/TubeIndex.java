@@ -0,0 +1,106 @@
+package com.honorsproj.mariogame.core;
+
+import java.util.Arrays;
+
+// Every tube in the level sorted by x. Tubes never move, so the index is
+// built once when the level is loaded and never changes. Finding the tubes
+// under a sprite is a binary search for the first tube that could reach
+// its left edge, then a walk right until tubes start past its right edge,
+// so the cost depends on how many tubes are nearby, not the level length.
+final class TubeIndex
+{
+    final int[] x, y, w, h;
+    final int size;
+    final int maxWidth;     // Widest tube, so a search knows how far left to start
+
+    private TubeIndex(int[] x, int[] y, int[] w, int[] h, int size)
+    {
+        this.x = x;
+        this.y = y;
+        this.w = w;
+        this.h = h;
+        this.size = size;
+
+        int widest = 0;
+        for (int i = 0; i < size; i++)
+        {
+            widest = Math.max(widest, w[i]);
+        }
+        maxWidth = widest;
+    }
+
+    // Index of the first tube that might overlap anything starting at left.
+    // Tubes from here on that start at or before the right edge are candidates.
+    int first(int left)
+    {
+        int key = left - maxWidth;
+        int lo = 0, hi = size;
+
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (x[mid] < key)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        return lo;
+    }
+
+    // Same test as Sprite.collidesWith
+    boolean collides(int i, int sx, int sy, int sw, int sh)
+    {
+        return !(sx + sw < x[i])
+                && !(sx > x[i] + w[i])
+                && !(sy + sh < y[i])
+                && !(sy > y[i] + h[i]);
+    }
+
+    // Collects tubes in any order and sorts them into an index
+    static class Builder
+    {
+        int[] x = new int[16], y = new int[16], w = new int[16], h = new int[16];
+        int size;
+
+        void add(int tx, int ty, int tw, int th)
+        {
+            if (size == x.length)
+            {
+                x = Arrays.copyOf(x, size * 2);
+                y = Arrays.copyOf(y, size * 2);
+                w = Arrays.copyOf(w, size * 2);
+                h = Arrays.copyOf(h, size * 2);
+            }
+
+            x[size] = tx;
+            y[size] = ty;
+            w[size] = tw;
+            h[size] = th;
+            size++;
+        }
+
+        TubeIndex build()
+        {
+            // Sort by x, keeping the order tubes were added in for equal x
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++)
+            {
+                keys[i] = ((long)x[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+
+            int[] sx = new int[size], sy = new int[size], sw = new int[size], sh = new int[size];
+            for (int k = 0; k < size; k++)
+            {
+                int i = (int)keys[k];
+                sx[k] = x[i];
+                sy[k] = y[i];
+                sw[k] = w[i];
+                sh[k] = h[i];
+            }
+
+            return new TubeIndex(sx, sy, sw, sh, size);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.honorsproj.mariogame.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A fixed set of threads that split a job into numbered batches. The thread
+// calling run() works on batches too and returns once every batch is done,
+// so the job's results are safe to read straight after. Workers sleep
+// between jobs and nothing is allocated per job.
+//
+// Plain threads and wait/notify rather than a ForkJoinPool, which Android
+// only has from API 21.
+final class WorkerPool
+{
+    // Work to split up. run(batch) is called once for every batch number.
+    interface Job
+    {
+        void run(int batch);
+    }
+
+    final Thread[] threads;
+    final AtomicInteger nextBatch = new AtomicInteger();
+
+    // Guarded by this
+    Job job;
+    int batchCount;
+    int generation;     // Goes up once per job, so workers know there is a new one
+    int busy;           // Workers still on the current job
+    Throwable failure;  // First exception a worker threw
+    boolean shutdown;
+
+    WorkerPool(int workers)
+    {
+        threads = new Thread[workers];
+
+        for (int i = 0; i < workers; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    work();
+                }
+            }, "Update worker " + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    // Threads taking part in a job, counting the caller
+    int parallelism()
+    {
+        return threads.length + 1;
+    }
+
+    // Runs batches 0 to batches - 1 across the workers and this thread
+    void run(Job job, int batches)
+    {
+        synchronized (this)
+        {
+            this.job = job;
+            batchCount = batches;
+            nextBatch.set(0);
+            busy = threads.length;
+            generation++;
+            notifyAll();
+        }
+
+        runBatches(job, batches);
+
+        synchronized (this)
+        {
+            while (busy > 0)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted waiting for update workers", e);
+                }
+            }
+
+            this.job = null;
+
+            if (failure != null)
+            {
+                Throwable t = failure;
+                failure = null;
+                throw new IllegalStateException("Update worker failed", t);
+            }
+        }
+    }
+
+    void runBatches(Job job, int batches)
+    {
+        int batch;
+        while ((batch = nextBatch.getAndIncrement()) < batches)
+        {
+            job.run(batch);
+        }
+    }
+
+    // Worker thread loop
+    void work()
+    {
+        int seen = 0;
+
+        while (true)
+        {
+            Job current;
+            int batches;
+
+            synchronized (this)
+            {
+                while (generation == seen && !shutdown)
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // Only shutdown() stops a worker. One that quit here
+                        // would never count itself out of the next job, and
+                        // run() would wait for it forever.
+                    }
+                }
+
+                if (shutdown)
+                    return;
+
+                seen = generation;
+                current = job;
+                batches = batchCount;
+            }
+
+            try
+            {
+                runBatches(current, batches);
+            }
+            catch (Throwable t)
+            {
+                synchronized (this)
+                {
+                    if (failure == null)
+                        failure = t;
+                }
+            }
+
+            synchronized (this)
+            {
+                if (--busy == 0)
+                    notifyAll();
+            }
+        }
+    }
+
+    // Stops the worker threads once they finish what they are doing
+    void shutdown()
+    {
+        synchronized (this)
+        {
+            shutdown = true;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Streams a long level in and out by chunk while Mario walks through it.
+ */
+public class ChunkStreamerTest
+{
+    // A level 200 screens long with a tube and a few goombas every 1000 pixels
+    static Model longLevel()
+    {
+        Model model = HeadlessDriver.createModel();
+        ChunkStreamer streamer = model.useStreaming(2048);
+
+        for (int x = 2000; x < 400000; x += 1000)
+        {
+            streamer.addTube(x, model.ground - 200);
+            streamer.addGoomba(x + 300, model.ground - 100);
+            streamer.addGoomba(x + 600, model.ground - 100);
+        }
+
+        return model;
+    }
+
+    static void walk(Model model, int buttons, int ticks)
+    {
+        for (int i = 0; i < ticks; i++)
+        {
+            model.tick(buttons | (i % 90 < 20 ? Input.JUMP : 0));
+        }
+    }
+
+    @Test
+    public void update_keepsOnlyNearbyChunksInPlay()
+    {
+        Model model = longLevel();
+        int total = model.streamer.totalSprites();
+        int most = 0;
+
+        for (int i = 0; i < 100; i++)
+        {
+            walk(model, Input.MOVE_RIGHT, 100);
+            most = Math.max(most, model.sprites.size());
+        }
+
+        // A few screens' worth of sprites, not the whole level
+        assertTrue(most < 50);
+        assertTrue(model.streamer.activeChunks <= 3);
+        assertTrue(model.streamer.packedChunks > 0);
+        // Nothing was lost on the way
+        assertEquals(total, model.streamer.totalSprites());
+    }
+
+    @Test
+    public void update_bringsChunksBackWhenBacktracking()
+    {
+        Model model = longLevel();
+        walk(model, 0, 60);   // Let everything land
+
+        int total = model.streamer.totalSprites();
+
+        walk(model, Input.MOVE_RIGHT, 2000);
+        assertTrue(model.streamer.packedChunks > 0);
+        walk(model, Input.MOVE_LEFT, 2600);
+        assertTrue(model.scrollVal < 2048);
+
+        assertEquals(total, model.streamer.totalSprites());
+        assertTrue(model.sprites.size() > 1);
+        assertTrue(model.sprites.size() < 50);
+
+        // Streamed sprites come back where they were frozen (on the ground)
+        for (int i = 0; i < model.sprites.size(); i++)
+        {
+            Sprite s = model.sprites.get(i);
+            if (s.isGoomba())
+                assertTrue(s.y + s.h <= model.ground);
+        }
+    }
+
+    @Test
+    public void update_worksWithEntityStore()
+    {
+        Model model = longLevel();
+        model.useEntityStore(true);
+        int total = model.streamer.totalSprites();
+
+        walk(model, Input.MOVE_RIGHT, 3000);
+        walk(model, Input.MOVE_LEFT, 1000);
+
+        assertEquals(total, model.streamer.totalSprites());
+        assertEquals(model.sprites.size() - 1, model.entities.size());
+    }
+
+    @Test
+    public void update_keepsStatsInStepAndOnlyTracksNearbyFrozenChunks()
+    {
+        Model model = longLevel();
+        ChunkStreamer streamer = model.streamer;
+
+        for (int round = 0; round < 6; round++)
+        {
+            walk(model, round % 2 == 0 ? Input.MOVE_RIGHT : Input.MOVE_LEFT, 1500);
+
+            int active = 0, frozen = 0, packed = 0;
+            for (ChunkStreamer.Chunk c : streamer.chunks)
+            {
+                if (c == null)
+                    continue;
+                else if (c.active)
+                    active++;
+                else if (!c.frozen.isEmpty())
+                    frozen++;
+                else if (c.packedCount > 0)
+                    packed++;
+            }
+
+            assertEquals(active, streamer.activeChunks);
+            assertEquals(frozen, streamer.frozenChunks);
+            assertEquals(packed, streamer.packedChunks);
+
+            // Only chunks next to the active ones are ever left frozen
+            assertTrue(streamer.frozenList.size() <= 2 * (streamer.packDistance + 1));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which parts of the screen DirtyRegion says a frame must repaint.
+ */
+public class DirtyRegionTest
+{
+    static void frame(DirtyRegion dirty, float scroll, float x, float y)
+    {
+        dirty.begin(1000, 500, scroll);
+        dirty.add(x, y, 40, 60);
+    }
+
+    static void end(DirtyRegion dirty)
+    {
+        dirty.end(dirty.left, dirty.top, dirty.right, dirty.bottom);
+    }
+
+    @Test
+    public void begin_firstFrameIsFull()
+    {
+        DirtyRegion dirty = new DirtyRegion();
+        frame(dirty, 0, 100, 100);
+
+        assertTrue(dirty.isFull());
+        assertEquals(0, dirty.left);
+        assertEquals(1000, dirty.right);
+        assertEquals(500, dirty.bottom);
+
+        end(dirty);
+        assertEquals(500000, dirty.area);
+    }
+
+    @Test
+    public void add_coversOldAndNewBounds()
+    {
+        DirtyRegion dirty = new DirtyRegion();
+        frame(dirty, 0, 100, 100);
+        end(dirty);
+
+        // Moved right and down by a fraction of a pixel and then some
+        frame(dirty, 0, 110.5f, 103);
+
+        assertFalse(dirty.isFull());
+        assertEquals(100, dirty.left);
+        assertEquals(100, dirty.top);
+        assertEquals(151, dirty.right);     // 110.5 + 40 rounded up
+        assertEquals(163, dirty.bottom);
+
+        end(dirty);
+        assertEquals(51 * 63, dirty.area);
+    }
+
+    @Test
+    public void begin_scrollingRepaintsEverything()
+    {
+        DirtyRegion dirty = new DirtyRegion();
+        frame(dirty, 0, 100, 100);
+        end(dirty);
+
+        frame(dirty, 18, 100, 100);
+
+        assertTrue(dirty.isFull());
+    }
+
+    @Test
+    public void begin_erasesSpritesThatWentAway()
+    {
+        DirtyRegion dirty = new DirtyRegion();
+        frame(dirty, 0, 100, 100);
+        end(dirty);
+
+        dirty.begin(1000, 500, 0);
+
+        assertEquals(100, dirty.left);
+        assertEquals(140, dirty.right);
+        end(dirty);
+
+        // And after that there is nothing left to repaint
+        dirty.begin(1000, 500, 0);
+        assertTrue(dirty.isEmpty());
+    }
+
+    @Test
+    public void add_clipsToScreenAndSkipsOffscreenSprites()
+    {
+        DirtyRegion dirty = new DirtyRegion();
+        frame(dirty, 0, 100, 100);
+        end(dirty);
+
+        dirty.begin(1000, 500, 0);
+        dirty.add(-2000, 100, 40, 60);
+        dirty.add(980, 480, 40, 60);
+
+        assertEquals(1000, dirty.right);
+        assertEquals(500, dirty.bottom);
+        assertEquals(100, dirty.left);
+        assertEquals(1, dirty.currentCount);
+    }
+}
@@ -0,0 +1,156 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Spawns and despawns sprites through the Model's EntityManager.
+ */
+public class EntityManagerTest
+{
+    // Every sprite's index matches its place in the list
+    static void assertIndexed(Model model)
+    {
+        for (int i = 0; i < model.sprites.size(); i++)
+        {
+            Sprite s = model.sprites.get(i);
+            assertEquals(i, s.index);
+            assertSame(s, model.lifecycle.get(s.handle));
+        }
+    }
+
+    @Test
+    public void get_returnsNullOnceDespawned()
+    {
+        Model model = new Model();
+        Goomba goomba = new Goomba(model, 3000, 500);
+        int handle = model.addSprite(goomba);
+
+        assertSame(goomba, model.lifecycle.get(handle));
+
+        model.despawn(goomba);
+        assertNull(model.lifecycle.get(handle));
+        assertFalse(model.sprites.contains(goomba));
+
+        // The slot is reused with a new generation
+        Goomba next = new Goomba(model, 3000, 500);
+        int nextHandle = model.addSprite(next);
+        assertNotEquals(handle, nextHandle);
+        assertNull(model.lifecycle.get(handle));
+        assertSame(next, model.lifecycle.get(nextHandle));
+        assertIndexed(model);
+    }
+
+    @Test
+    public void update_appliesQueuesAfterThePass()
+    {
+        final Model model = HeadlessDriver.createModel();
+        final ArrayList<Sprite> spawned = new ArrayList<Sprite>();
+
+        // A sprite that spawns another and despawns itself while updating
+        Sprite spawner = new Sprite()
+        {
+            @Override
+            public void update()
+            {
+                int before = model.sprites.size();
+
+                Goomba g = new Goomba(model, 900, 500);
+                model.addSprite(g);
+                spawned.add(g);
+                model.despawn(this);
+
+                // Nothing changes until the pass is over
+                assertEquals(before, model.sprites.size());
+                assertTrue(model.sprites.contains(this));
+            }
+        };
+        model.addSprite(spawner);
+        int count = model.sprites.size();
+
+        model.tick(0);
+
+        assertFalse(model.sprites.contains(spawner));
+        assertEquals(1, spawned.size());
+        assertTrue(model.sprites.contains(spawned.get(0)));
+        assertEquals(count, model.sprites.size());
+        assertEquals(1, model.lifecycle.spawned);
+        assertEquals(1, model.lifecycle.despawned);
+        assertIndexed(model);
+    }
+
+    @Test
+    public void despawn_dropsASpawnStillQueuedInTheSamePass()
+    {
+        Model model = HeadlessDriver.createModel();
+        int count = model.sprites.size();
+
+        model.lifecycle.deferring = true;
+        Goomba kept = new Goomba(model, 900, 500);
+        Goomba dropped = new Goomba(model, 1000, 500);
+        int keptHandle = model.addSprite(kept);
+        int droppedHandle = model.addSprite(dropped);
+        model.despawn(dropped);
+        model.lifecycle.deferring = false;
+        model.lifecycle.flush();
+
+        assertEquals(count + 1, model.sprites.size());
+        assertSame(kept, model.lifecycle.get(keptHandle));
+        assertNull(model.lifecycle.get(droppedHandle));
+        assertFalse(model.sprites.contains(dropped));
+        assertIndexed(model);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void spawn_throwsOnceEverySlotIsTaken()
+    {
+        Model model = new Model();
+        EntityManager lifecycle = model.lifecycle;
+
+        // As if every slot a handle can name had been handed out
+        int limit = 1 << EntityManager.SLOT_BITS;
+        lifecycle.slots = new Sprite[limit];
+        lifecycle.generations = new int[limit];
+        lifecycle.slotCount = limit;
+
+        model.addSprite(new Goomba(model, 3000, 500));
+    }
+
+    @Test
+    public void despawn_massDespawnKeepsTheRest()
+    {
+        Model model = SpatialHashTest.crowdedModel(5, true);
+        ArrayList<Sprite> goombas = new ArrayList<Sprite>();
+        for (Sprite s : model.sprites)
+        {
+            if (s.isGoomba())
+                goombas.add(s);
+        }
+        int count = model.sprites.size();
+
+        // Screen-clearing event
+        model.lifecycle.deferring = true;
+        for (Sprite g : goombas)
+        {
+            model.despawn(g);
+        }
+        model.lifecycle.deferring = false;
+        model.lifecycle.flush();
+
+        assertEquals(count - goombas.size(), model.sprites.size());
+        assertEquals(goombas.size(), model.lifecycle.despawned);
+        for (Sprite s : model.sprites)
+        {
+            assertFalse(s.isGoomba());
+        }
+        assertIndexed(model);
+
+        // The grid forgot them too
+        ArrayList<Sprite> found = new ArrayList<Sprite>();
+        model.spritesIn(-100000, -100000, 100000, 100000, found);
+        assertEquals(model.sprites.size(), found.size());
+    }
+}
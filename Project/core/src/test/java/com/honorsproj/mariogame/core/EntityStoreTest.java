@@ -0,0 +1,57 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that updating from the EntityStore gives exactly the same game as
+ * updating one sprite object at a time.
+ */
+public class EntityStoreTest
+{
+    static void assertSameGame(Model objects, Model store, int ticks)
+    {
+        store.useEntityStore(true);
+        int start = objects.sprites.size();
+        int fired = 0;
+
+        for (int tick = 0; tick < ticks; tick++)
+        {
+            int buttons = HeadlessDriver.walkAndFire.buttons(tick);
+            if ((buttons & Input.FIRE) != 0)
+                fired++;
+
+            objects.tick(buttons);
+            store.tick(buttons);
+
+            assertEquals("tick " + tick, objects.stateHash(), store.stateHash());
+        }
+
+        // Fireballs were fired, and goombas and fireballs despawned
+        assertTrue(fired > 0);
+        assertTrue(objects.sprites.size() < start + fired);
+    }
+
+    @Test
+    public void update_matchesObjectUpdateOnCrowdedLevel()
+    {
+        assertSameGame(ParallelUpdateTest.crowded(3000), ParallelUpdateTest.crowded(3000), 200);
+    }
+
+    @Test
+    public void update_matchesObjectUpdateWithFireballsLeavingTheScreen()
+    {
+        Model objects = HeadlessDriver.createModel();
+        Model store = HeadlessDriver.createModel();
+
+        // Enough goombas in Mario's way to be hit as he walks and fires
+        for (int i = 0; i < 200; i++)
+        {
+            objects.addSprite(new Goomba(objects, 800 + i * 97, objects.ground - 300));
+            store.addSprite(new Goomba(store, 800 + i * 97, store.ground - 300));
+        }
+
+        assertSameGame(objects, store, 3600);
+    }
+}
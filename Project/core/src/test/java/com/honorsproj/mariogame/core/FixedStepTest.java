@@ -0,0 +1,87 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Steps FixedStep through made-up timelines.
+ */
+public class FixedStepTest
+{
+    final static long ms = 1000000;
+
+    // 100 ticks per second, so one tick is 10 ms
+    static FixedStep startedClock()
+    {
+        FixedStep clock = new FixedStep(100);
+        clock.start(0);
+        return clock;
+    }
+
+    @Test
+    public void advance_runsOneTickPerTickOfTimePassed()
+    {
+        FixedStep clock = startedClock();
+
+        assertEquals(0, clock.advance(9 * ms));
+        assertEquals(1, clock.advance(10 * ms));
+        assertEquals(0, clock.advance(19 * ms));
+        assertEquals(2, clock.advance(30 * ms));
+    }
+
+    @Test
+    public void advance_carriesLeftoverTimeToTheNextCall()
+    {
+        FixedStep clock = startedClock();
+        int ticks = 0;
+
+        // 7 ms at a time: ticks land on no call in particular, but none are lost
+        for (long t = 7 * ms; t <= 700 * ms; t += 7 * ms)
+        {
+            ticks += clock.advance(t);
+        }
+
+        assertEquals(70, ticks);
+    }
+
+    @Test
+    public void advance_clampsToMaxStepsAndDropsTheBacklog()
+    {
+        FixedStep clock = startedClock();
+        clock.maxSteps = 3;
+
+        // A one second stall owes 100 ticks
+        assertEquals(3, clock.advance(1000 * ms + 4 * ms));
+        assertEquals(4 * ms, clock.accumulator);
+
+        // Back to normal straight away rather than catching up
+        assertEquals(0, clock.advance(1005 * ms));
+        assertEquals(1, clock.advance(1010 * ms));
+    }
+
+    @Test
+    public void due_spacesTicksOneTickApartEndingAtLastTick()
+    {
+        FixedStep clock = startedClock();
+
+        assertEquals(3, clock.advance(35 * ms));
+        assertEquals(10 * ms, clock.due(0));
+        assertEquals(20 * ms, clock.due(1));
+        assertEquals(30 * ms, clock.due(2));
+        assertEquals(30 * ms, clock.lastTick());
+        assertEquals(5 * ms, clock.sleepNanos(35 * ms));
+        assertEquals(2 * ms, clock.sleepNanos(38 * ms));
+    }
+
+    @Test
+    public void alpha_isClampedBetweenTicks()
+    {
+        FixedStep clock = startedClock();
+
+        assertEquals(0f, clock.alpha(10 * ms, 10 * ms), 1e-6f);
+        assertEquals(0.25f, clock.alpha(12500000, 10 * ms), 1e-6f);
+        assertEquals(0f, clock.alpha(5 * ms, 10 * ms), 1e-6f);
+        assertEquals(1f, clock.alpha(40 * ms, 10 * ms), 1e-6f);
+    }
+}
@@ -0,0 +1,64 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the 16.16 fixed-point physics carries fractions of a pixel exactly.
+ */
+public class FixedTest
+{
+    @Test
+    public void position_roundsDownForNegativeValues()
+    {
+        long p = Fixed.position(-3, 0) - Fixed.ONE / 4;
+
+        assertEquals(-4, Fixed.pixels(p));
+        assertEquals(Fixed.ONE * 3 / 4, Fixed.fraction(p));
+        assertEquals(p, Fixed.position(Fixed.pixels(p), Fixed.fraction(p)));
+    }
+
+    @Test
+    public void moveY_carriesFractionsBetweenTicks()
+    {
+        Model model = HeadlessDriver.createModel();
+        Goomba g = new Goomba(model, 0, 0);
+
+        // A quarter pixel a tick adds up to one pixel every four ticks
+        for (int tick = 0; tick < 40; tick++)
+        {
+            g.moveY(Fixed.ONE / 4);
+        }
+
+        assertEquals(10, g.y);
+        assertEquals(0, g.subY);
+    }
+
+    @Test
+    public void update_fallsTheSameWithAndWithoutEntityStore()
+    {
+        Model plain = HeadlessDriver.createModel();
+        Model stored = HeadlessDriver.createModel();
+        stored.useEntityStore(true);
+
+        Goomba a = new Goomba(plain, 3000, 100);
+        Goomba b = new Goomba(stored, 3000, 100);
+        plain.addSprite(a);
+        stored.addSprite(b);
+
+        for (int tick = 0; tick < 60; tick++)
+        {
+            plain.update();
+            stored.update();
+
+            assertEquals(a.y, b.y);
+            assertEquals(a.subY, b.subY);
+            assertEquals(a.velY, b.velY);
+        }
+
+        // Landed exactly on the ground
+        assertEquals(plain.ground - a.h, a.y);
+        assertEquals(0, a.subY);
+    }
+}
@@ -0,0 +1,105 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Plays made-up vsync sequences through FramePacer.
+ */
+public class FramePacerTest
+{
+    final static long period = 16666667;    // 60 Hz
+
+    @Test
+    public void onVsync_drawsEveryVsyncWhenFramesAreFast()
+    {
+        FramePacer pacer = new FramePacer(period);
+
+        for (int i = 0; i < 100; i++)
+        {
+            assertTrue(pacer.onVsync(1000000000L + i * period));
+            pacer.frameDone(period / 4);
+        }
+
+        assertEquals(100, pacer.frames);
+        assertEquals(0, pacer.skipped);
+        assertEquals(0, pacer.dropped);
+        assertEquals(0, pacer.janky);
+    }
+
+    @Test
+    public void onVsync_countsVsyncsMissedByLateCallbacks()
+    {
+        FramePacer pacer = new FramePacer(period);
+
+        pacer.onVsync(0);
+        pacer.onVsync(period);
+        pacer.onVsync(4 * period);  // Two vsyncs went by
+
+        assertEquals(2, pacer.dropped);
+        assertEquals(3, pacer.vsyncs);
+    }
+
+    @Test
+    public void frameDone_slowFramesDrawOnEverySecondVsync()
+    {
+        FramePacer pacer = new FramePacer(period);
+        long vsync = 0;
+
+        assertTrue(pacer.onVsync(vsync));
+        pacer.frameDone(period * 3 / 2);    // Too slow for one vsync
+
+        assertEquals(1, pacer.janky);
+        assertEquals(2, pacer.interval());
+
+        // Now frames that fit in two vsyncs come out steadily on every other one
+        for (int i = 1; i <= 20; i++)
+        {
+            vsync += period;
+            boolean draw = pacer.onVsync(vsync);
+            assertEquals(i % 2 == 0, draw);
+
+            if (draw)
+                pacer.frameDone(period * 3 / 2);
+        }
+
+        assertEquals(1, pacer.janky);
+        assertEquals(10, pacer.skipped);
+    }
+
+    @Test
+    public void frameDone_stepsBackDownOnceFramesAreFastAgain()
+    {
+        FramePacer pacer = new FramePacer(period);
+        pacer.onVsync(0);
+        pacer.frameDone(period * 2);
+        assertEquals(2, pacer.interval());
+
+        long vsync = 0;
+        for (int i = 0; i < 2 * FramePacer.stepDownAfter; i++)
+        {
+            vsync += period;
+            if (pacer.onVsync(vsync))
+                pacer.frameDone(period / 4);
+        }
+
+        assertEquals(1, pacer.interval());
+    }
+
+    @Test
+    public void onVsync_followsTheRealRefreshRate()
+    {
+        // Thinks it is 60 Hz, but the display runs at 90 Hz
+        FramePacer pacer = new FramePacer(period);
+        long real = 11111111;
+
+        for (int i = 0; i < 200; i++)
+        {
+            pacer.onVsync(i * real);
+        }
+
+        assertEquals(real, pacer.periodNanos, real / 100);
+        assertEquals(0, pacer.dropped);
+    }
+}
@@ -0,0 +1,55 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the simulation without a device through HeadlessDriver.
+ */
+public class HeadlessDriverTest
+{
+    @Test
+    public void run_simulatesWithoutAView()
+    {
+        HeadlessDriver driver = new HeadlessDriver(HeadlessDriver.createModel(),
+                HeadlessDriver.walkAndFire);
+        Model model = driver.getModel();
+        int startX = model.mario.x;
+
+        double tps = driver.run(5000);
+
+        assertEquals(5000, driver.getTick());
+        assertTrue(tps > 0);
+        assertNotEquals(startX, model.mario.x);
+        // Mario stands on the ground or a tube, never below the ground
+        assertTrue(model.mario.y + model.mario.h <= model.ground);
+        assertTrue(model.fireballs.peak > 0);
+    }
+
+    @Test
+    public void run_isRepeatable()
+    {
+        HeadlessDriver a = new HeadlessDriver(HeadlessDriver.createModel(),
+                HeadlessDriver.walkAndFire);
+        HeadlessDriver b = new HeadlessDriver(HeadlessDriver.createModel(),
+                HeadlessDriver.walkAndFire);
+
+        for (int i = 0; i < 20; i++)
+        {
+            a.run(250);
+            b.run(250);
+
+            Model ma = a.getModel();
+            Model mb = b.getModel();
+            assertEquals(ma.sprites.size(), mb.sprites.size());
+            assertEquals(ma.scrollVal, mb.scrollVal);
+
+            for (int j = 0; j < ma.sprites.size(); j++)
+            {
+                assertEquals(ma.sprites.get(j).x, mb.sprites.get(j).x);
+                assertEquals(ma.sprites.get(j).y, mb.sprites.get(j).y);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Records games into an InputLog and plays them back with InputReplayer.
+ */
+public class InputReplayerTest
+{
+    // Plays walkAndFire on level1 for the given ticks, recording as it goes
+    static InputLog record(int ticks, int hashInterval) throws IOException
+    {
+        return record(ticks, hashInterval, 0);
+    }
+
+    // The same, streaming the level in chunks chunkWidth wide if it is not 0
+    static InputLog record(int ticks, int hashInterval, int chunkWidth) throws IOException
+    {
+        LevelFile level = InputReplayer.findLevel("level1", LevelFileTest.levelsDir());
+        Model model = new Model(new SpriteSizes(), level);
+        model.viewWidth = HeadlessDriver.screenWidth;
+        model.ground = HeadlessDriver.screenHeight - HeadlessDriver.groundHeight;
+        if (chunkWidth > 0)
+            model.useStreaming(chunkWidth);
+
+        InputLog log = new InputLog(model, "level1", 1234L, 60, hashInterval);
+        for (int tick = 0; tick < ticks; tick++)
+        {
+            int buttons = HeadlessDriver.walkAndFire.buttons(tick);
+            model.tick(buttons);
+            log.record(buttons, model);
+        }
+
+        return log;
+    }
+
+    static InputLog writeAndRead(InputLog log) throws IOException
+    {
+        File file = File.createTempFile("replay", ".inp");
+        file.deleteOnExit();
+        log.write(file);
+        return InputLog.read(file);
+    }
+
+    static InputReplayer replayer(InputLog log) throws IOException
+    {
+        LevelFile level = InputReplayer.findLevel(log.levelId, LevelFileTest.levelsDir());
+        return new InputReplayer(log, log.createModel(level));
+    }
+
+    @Test
+    public void run_matchesRecordedGame() throws IOException
+    {
+        InputLog log = writeAndRead(record(5000, 1));
+
+        assertEquals("level1", log.levelId);
+        assertEquals(1234L, log.seed);
+        assertEquals(5000, log.tickCount);
+
+        InputReplayer replayer = replayer(log);
+        assertTrue(replayer.run());
+        assertEquals(-1, replayer.mismatchTick);
+        assertEquals(log.hashAfter(5000), replayer.getModel().stateHash());
+    }
+
+    @Test
+    public void run_matchesRecordedGameWithStreaming() throws IOException
+    {
+        InputLog log = writeAndRead(record(5000, 1, HeadlessDriver.screenWidth));
+
+        assertEquals(HeadlessDriver.screenWidth, log.chunkWidth);
+        assertNotNull(replayer(log).getModel().streamer);
+        assertTrue(replayer(log).run());
+    }
+
+    @Test
+    public void run_checksEveryHashInterval() throws IOException
+    {
+        InputLog log = writeAndRead(record(5000, 60));
+
+        assertTrue(replayer(log).run());
+    }
+
+    @Test
+    public void record_keepsLongHashIntervals() throws IOException
+    {
+        // More than a short holds
+        InputLog log = writeAndRead(record(5000, 40000));
+
+        assertEquals(40000, log.hashInterval);
+        assertEquals(5000, log.tickCount);
+        assertTrue(replayer(log).run());
+    }
+
+    @Test
+    public void record_keepsButtonsAsRunsOfTicks() throws IOException
+    {
+        Model model = HeadlessDriver.createModel();
+        InputLog log = new InputLog(model, "", 0, 60, 60);
+
+        // A minute walking, then a minute walking and jumping
+        for (int tick = 0; tick < 7200; tick++)
+        {
+            int buttons = tick < 3600 ? Input.MOVE_RIGHT : Input.MOVE_RIGHT | Input.JUMP;
+            model.tick(buttons);
+            log.record(buttons, model);
+        }
+
+        assertEquals(2, log.runCount);
+
+        InputLog read = writeAndRead(log);
+        assertEquals(2, read.runCount);
+        for (int tick = 0; tick < 7200; tick += 599)
+        {
+            assertEquals(log.buttons(tick), read.buttons(tick));
+        }
+        assertEquals(Input.MOVE_RIGHT, read.buttons(3599));
+        assertEquals(Input.MOVE_RIGHT | Input.JUMP, read.buttons(3600));
+    }
+
+    @Test
+    public void run_reportsTickWhereReplayDiverges() throws IOException
+    {
+        InputLog log = record(5000, 1);
+        assertEquals(Input.MOVE_RIGHT, log.buttons(100) & Input.MOVE_RIGHT);
+
+        // Walk the other way for one tick, by changing its byte in the file
+        // (ticks come just before the hashes at the end)
+        File file = File.createTempFile("replay", ".inp");
+        file.deleteOnExit();
+        log.write(file);
+        RandomAccessFile data = new RandomAccessFile(file, "rw");
+        data.seek(file.length() - 4 * (5000 + 1) - 5000 + 100);
+        data.writeByte(Input.MOVE_LEFT);
+        data.close();
+        log = InputLog.read(file);
+
+        InputReplayer replayer = replayer(log);
+        assertFalse(replayer.run());
+        assertEquals(101, replayer.mismatchTick);
+    }
+
+    @Test
+    public void run_rejectsDifferentStartingModel() throws IOException
+    {
+        InputLog log = writeAndRead(record(100, 1));
+
+        InputReplayer replayer = replayer(log);
+        replayer.getModel().addSprite(new Goomba(replayer.getModel(), 3000, 500));
+
+        assertFalse(replayer.run());
+        assertEquals(0, replayer.mismatchTick);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsOtherFiles() throws IOException
+    {
+        File file = File.createTempFile("replay", ".inp");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[] { 'P', 'L', 'V', 'L', 0, 1 });
+        out.close();
+
+        InputLog.read(file);
+    }
+}
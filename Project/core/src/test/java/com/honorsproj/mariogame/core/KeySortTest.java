@@ -0,0 +1,60 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks KeySort against Arrays.sort.
+ */
+public class KeySortTest
+{
+    @Test
+    public void sort_ordersNegativeAndPositiveKeysKeepingAddOrderForTies()
+    {
+        Random random = new Random(1);
+        KeySort sort = new KeySort();
+        long[] expected = new long[5000];
+
+        for (int i = 0; i < expected.length; i++)
+        {
+            int key = random.nextInt(2000) - 1000;
+            if (i % 100 == 0)
+                key = random.nextBoolean() ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+
+            sort.add(key, i);
+            expected[i] = ((long)key << 32) | i;
+        }
+
+        sort.sort();
+        Arrays.sort(expected);
+
+        assertEquals(expected.length, sort.size);
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertEquals((int)(expected[i] >> 32), sort.keys[i]);
+            assertEquals((int)expected[i], sort.values[i]);
+        }
+    }
+
+    @Test
+    public void first_findsFirstKeyAtOrAbove()
+    {
+        KeySort sort = new KeySort();
+        int[] keys = { 40, -10, 20, 20, 5 };
+        for (int i = 0; i < keys.length; i++)
+        {
+            sort.add(keys[i], i);
+        }
+        sort.sort();
+
+        assertEquals(0, sort.first(-100));
+        assertEquals(1, sort.first(-9));
+        assertEquals(2, sort.first(20));
+        assertEquals(4, sort.first(21));
+        assertEquals(5, sort.first(41));
+    }
+}
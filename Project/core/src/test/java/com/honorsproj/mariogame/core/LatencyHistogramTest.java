@@ -0,0 +1,65 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks LatencyHistogram percentiles against exactly sorted values.
+ */
+public class LatencyHistogramTest
+{
+    @Test
+    public void percentile_isWithinBucketPrecision()
+    {
+        LatencyHistogram h = new LatencyHistogram();
+
+        // 1 us to 10 ms
+        for (long v = 1000; v <= 10000000; v += 1000)
+        {
+            h.record(v);
+        }
+
+        assertEquals(10000, h.count());
+        assertEquals(10000000, h.max());
+
+        double[] ps = { 50, 95, 99 };
+        for (double p : ps)
+        {
+            long exact = (long)(p / 100 * 10000) * 1000;
+            long found = h.percentile(p);
+
+            assertTrue(p + ": " + found + " vs " + exact, found >= exact);
+            assertTrue(p + ": " + found + " vs " + exact, found <= exact * 1.125);
+        }
+
+        assertEquals(h.max(), h.percentile(100));
+    }
+
+    @Test
+    public void bucket_coversEveryValueInOrder()
+    {
+        int last = -1;
+        for (long v = 0; v < 100000; v++)
+        {
+            int b = LatencyHistogram.bucket(v);
+            assertTrue(b >= last);
+            assertTrue(v <= LatencyHistogram.highest(b));
+            last = b;
+        }
+
+        assertTrue(LatencyHistogram.bucket(Long.MAX_VALUE) < LatencyHistogram.BUCKETS);
+    }
+
+    @Test
+    public void reset_forgetsEverything()
+    {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(5000);
+        h.reset();
+
+        assertEquals(0, h.count());
+        assertEquals(0, h.max());
+        assertEquals(0, h.percentile(99));
+    }
+}
@@ -0,0 +1,135 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Converts level sources with LevelConverter and loads them back with LevelFile.
+ */
+public class LevelFileTest
+{
+    static File levelsDir()
+    {
+        return new File(System.getProperty("levels.dir", "../levels"));
+    }
+
+    static LevelFile convertAndMap(File source) throws IOException
+    {
+        File out = File.createTempFile(source.getName(), ".lvl");
+        out.deleteOnExit();
+        LevelConverter.convert(source, out);
+        return LevelFile.map(out);
+    }
+
+    // Type, x and y of every sprite, sorted, so levels can be compared
+    // whatever order their sprites were added in
+    static ArrayList<String> layout(Model model)
+    {
+        ArrayList<String> layout = new ArrayList<String>();
+        for (int i = 0; i < model.sprites.size(); i++)
+        {
+            Sprite s = model.sprites.get(i);
+            layout.add(s.getClass().getSimpleName() + " " + s.x + " " + s.y);
+        }
+        Collections.sort(layout);
+        return layout;
+    }
+
+    @Test
+    public void addTo_level1MatchesBuiltInLevel() throws IOException
+    {
+        LevelFile level = convertAndMap(new File(levelsDir(), "level1.txt"));
+
+        Model fromFile = new Model(new SpriteSizes(), level);
+        Model builtIn = new Model();
+
+        assertEquals(layout(builtIn), layout(fromFile));
+    }
+
+    @Test
+    public void addTo_streamsLargeLevelWithoutSprites() throws IOException
+    {
+        int n = 1000000;
+        int[] types = new int[n];
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            types[i] = i % 3 == 0 ? Sprite.TUBE : Sprite.GOOMBA;
+            xs[i] = 2000 + i * 40;
+            ys[i] = 500;
+        }
+        types[0] = Sprite.MARIO;
+        xs[0] = 300;
+
+        File out = File.createTempFile("large", ".lvl");
+        out.deleteOnExit();
+        LevelConverter.write(types, xs, ys, n, out);
+        assertTrue(out.length() > n * LevelFile.RECORD_SIZE);
+
+        LevelFile level = LevelFile.map(out);
+        Model model = HeadlessDriver.createModel();
+        ChunkStreamer streamer = model.useStreaming(2048);
+        int builtIn = streamer.totalSprites();
+        int inPlay = model.sprites.size();
+        level.addTo(model);
+
+        assertEquals(n, level.recordCount);
+        assertEquals(300, model.mario.x);
+        assertEquals(builtIn + n - 1, streamer.totalSprites());
+        // Only what is near the screen is made into sprites
+        assertTrue(model.sprites.size() > inPlay);
+        assertTrue(model.sprites.size() < 200);
+    }
+
+    @Test
+    public void addTo_skipsUnknownTypes() throws IOException
+    {
+        // Version 1 file with a type this version does not know
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.putInt(LevelFile.MAGIC).putShort((short)1).putShort((short)2).putInt(2);
+        buffer.put((byte)4).put("tube".getBytes("US-ASCII"));
+        buffer.put((byte)4).put("coin".getBytes("US-ASCII"));
+        buffer.put((byte)1).putInt(700).putInt(800);
+        buffer.put((byte)0).putInt(100).putInt(600);
+        buffer.flip();
+
+        LevelFile level = new LevelFile(buffer);
+        Model model = new Model(new SpriteSizes(), level);
+
+        assertEquals(2, model.sprites.size());
+        assertTrue(model.sprites.get(1).isTube());
+        assertEquals(100, model.sprites.get(1).x);
+    }
+
+    @Test(expected = IOException.class)
+    public void constructor_rejectsNewerVersion() throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        buffer.putInt(LevelFile.MAGIC).putShort((short)(LevelFile.VERSION + 1))
+                .putShort((short)0).putInt(0);
+        buffer.flip();
+
+        new LevelFile(buffer);
+    }
+
+    @Test
+    public void typeOf_givesTheKindOfTheSpriteLoadedForIt()
+    {
+        Model model = new Model();
+        Sprite[] sprites = { model.mario, new Tube(model, 0, 0), new Goomba(model, 0, 0) };
+
+        for (Sprite s : sprites)
+        {
+            assertEquals(s.kind(), LevelFile.typeOf(LevelFile.TYPE_NAMES[s.kind()]));
+        }
+        assertEquals(-1, LevelFile.typeOf("fireball"));
+    }
+}
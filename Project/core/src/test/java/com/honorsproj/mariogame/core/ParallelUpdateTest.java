@@ -0,0 +1,122 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that splitting the EntityStore update across threads gives
+ * exactly the same game as running it on one thread.
+ */
+public class ParallelUpdateTest
+{
+    // Goombas, fireballs and tubes spread over a level about 40 pixels per sprite
+    static Model crowded(int count)
+    {
+        return crowded(count / 5, count / 2, count * 3 / 10);
+    }
+
+    static Model crowded(int tubes, int goombas, int fireballs)
+    {
+        int count = tubes + goombas + fireballs;
+        Random random = new Random(count);
+        Model model = HeadlessDriver.createModel();
+        int width = count * 40;
+
+        // Keep the fireballs from being removed for leaving the screen
+        model.viewWidth = width + 2 * HeadlessDriver.screenWidth;
+        model.scrollVal = -HeadlessDriver.screenWidth;
+
+        for (int i = 0; i < tubes; i++)
+        {
+            model.addSprite(new Tube(model, random.nextInt(width), 600 + random.nextInt(300)));
+        }
+
+        for (int i = 0; i < goombas; i++)
+        {
+            model.addSprite(new Goomba(model, random.nextInt(width), random.nextInt(900)));
+        }
+
+        for (int i = 0; i < fireballs; i++)
+        {
+            model.addSprite(new Fireball(model, random.nextInt(width), random.nextInt(900),
+                    random.nextBoolean()));
+        }
+
+        return model;
+    }
+
+    static void assertSameGame(int count, int threads, int ticks)
+    {
+        assertSameGame(count / 5, count / 2, count * 3 / 10, threads, ticks);
+    }
+
+    static void assertSameGame(int tubes, int goombas, int fireballs, int threads, int ticks)
+    {
+        Model serial = crowded(tubes, goombas, fireballs);
+        serial.useEntityStore(true);
+        Model parallel = crowded(tubes, goombas, fireballs);
+        parallel.useParallelUpdate(threads);
+
+        try
+        {
+            for (int tick = 0; tick < ticks; tick++)
+            {
+                int buttons = HeadlessDriver.walkAndFire.buttons(tick);
+                serial.tick(buttons);
+                parallel.tick(buttons);
+
+                assertEquals("tick " + tick, serial.stateHash(), parallel.stateHash());
+            }
+
+            // Goombas and fireballs really did kill each other off
+            assertTrue(serial.sprites.size() < 1 + tubes + goombas + fireballs);
+        }
+        finally
+        {
+            parallel.useParallelUpdate(1);
+        }
+    }
+
+    @Test
+    public void update_matchesSerialAt10kEntities()
+    {
+        assertSameGame(10000, 4, 30);
+    }
+
+    @Test
+    public void update_matchesSerialWhenRangesEndJustPastOrShortOfABatch()
+    {
+        int batch = EntityStore.batchSize;
+
+        // Goomba and fireball ranges one short of and one past a batch
+        // boundary, so the last batch of each is nearly empty or nearly full
+        assertSameGame(400, 2 * batch - 1, batch + 1, 3, 30);
+        assertSameGame(400, 2 * batch + 1, 3 * batch - 1, 3, 30);
+    }
+
+    @Test
+    public void useParallelUpdate_canBeSwitchedMidGame()
+    {
+        Model serial = crowded(5000);
+        serial.useEntityStore(true);
+        Model switched = crowded(5000);
+        switched.useEntityStore(true);
+
+        for (int tick = 0; tick < 90; tick++)
+        {
+            // Serial, then parallel, then serial again
+            if (tick == 30)
+                switched.useParallelUpdate(3);
+            else if (tick == 60)
+                switched.useParallelUpdate(1);
+
+            serial.tick(Input.MOVE_RIGHT);
+            switched.tick(Input.MOVE_RIGHT);
+
+            assertEquals("tick " + tick, serial.stateHash(), switched.stateHash());
+        }
+    }
+}
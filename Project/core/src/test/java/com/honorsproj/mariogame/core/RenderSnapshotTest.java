@@ -0,0 +1,113 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Captures RenderSnapshots and passes values between threads through a TripleBuffer.
+ */
+public class RenderSnapshotTest
+{
+    @Test
+    public void latest_returnsNewestPublishedValue()
+    {
+        TripleBuffer<int[]> buffer = new TripleBuffer<int[]>(new int[1], new int[1], new int[1]);
+
+        assertFalse(buffer.hasNew());
+
+        buffer.back()[0] = 1;
+        buffer.publish();
+        buffer.back()[0] = 2;
+        buffer.publish();
+
+        assertTrue(buffer.hasNew());
+        assertEquals(2, buffer.latest()[0]);
+        assertFalse(buffer.hasNew());
+        // Nothing new, so the same value again
+        assertEquals(2, buffer.latest()[0]);
+    }
+
+    @Test
+    public void latest_neverSeesAHalfWrittenValue() throws InterruptedException
+    {
+        final TripleBuffer<int[]> buffer = new TripleBuffer<int[]>(
+                new int[256], new int[256], new int[256]);
+        final int writes = 200000;
+        final AtomicReference<String> failure = new AtomicReference<String>();
+
+        Thread writer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (int v = 1; v <= writes; v++)
+                {
+                    int[] back = buffer.back();
+                    for (int i = 0; i < back.length; i++)
+                    {
+                        back[i] = v;
+                    }
+                    buffer.publish();
+                }
+            }
+        });
+
+        writer.start();
+
+        // Read until the last value arrives, checking every value is whole
+        // and never older than the one before
+        int last = 0;
+        while (last < writes)
+        {
+            int[] front = buffer.latest();
+            int v = front[0];
+
+            for (int i = 1; i < front.length; i++)
+            {
+                if (front[i] != v)
+                    failure.compareAndSet(null, "torn value " + v + "/" + front[i]);
+            }
+
+            if (v < last)
+                failure.compareAndSet(null, "went back from " + last + " to " + v);
+
+            last = v;
+            if (failure.get() != null)
+                break;
+        }
+
+        writer.join();
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void capture_copiesSpritesNearTheScreen()
+    {
+        Model model = HeadlessDriver.createModel();
+        model.tick(Input.MOVE_RIGHT);
+
+        RenderSnapshot snap = new RenderSnapshot();
+        snap.capture(model, model.scrollVal, 0, model.scrollVal + model.viewWidth,
+                HeadlessDriver.screenHeight);
+
+        assertEquals(model.sprites.size(), snap.total);
+        assertTrue(snap.count > 0 && snap.count <= snap.total);
+        assertEquals(model.scrollVal, snap.scrollVal);
+
+        boolean foundMario = false;
+        for (int i = 0; i < snap.count; i++)
+        {
+            if (snap.kind[i] == Sprite.MARIO)
+            {
+                foundMario = true;
+                assertEquals(model.mario.x, snap.x[i]);
+                assertEquals(model.mario.lastX, snap.lastX[i]);
+                assertEquals(model.mario.frame, snap.frame[i]);
+            }
+        }
+        assertTrue(foundMario);
+    }
+}
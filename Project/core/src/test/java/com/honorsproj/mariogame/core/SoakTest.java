@@ -0,0 +1,69 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the game for a long time with SoakHarness and checks nothing grows.
+ * Runs 100 samples by default; ./gradlew :core:soakTest runs millions of ticks.
+ */
+public class SoakTest
+{
+    static String join(String[] lines)
+    {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < lines.length; i++)
+        {
+            b.append('\n').append(lines[i]);
+        }
+        return b.toString();
+    }
+
+    @Test
+    public void run_nothingGrowsWhileWalkingAndFiring()
+    {
+        Long ticks = Long.getLong("soak.ticks");
+
+        SoakHarness soak = new SoakHarness(new HeadlessDriver(HeadlessDriver.createModel(),
+                HeadlessDriver.walkAndFire));
+
+        // Tick times on a shared machine are too noisy to fit a trend to
+        // over a short run, so only long soaks check them
+        if (ticks == null)
+        {
+            ticks = 360000L;
+            soak.maxLatencySlope = Double.POSITIVE_INFINITY;
+        }
+
+        boolean passed = soak.run(ticks);
+
+        assertTrue(join(soak.report()), passed);
+        assertEquals(0, soak.spriteSlope, 1e-9);
+    }
+
+    @Test
+    public void run_catchesFireballsThatNeverLeave()
+    {
+        // A screen so wide fireballs never leave it, and enough of them to
+        // keep shooting for the whole run
+        Model model = HeadlessDriver.createModel();
+        model.viewWidth = Integer.MAX_VALUE / 2;
+        model.setFireballLimit(5000);
+
+        SoakHarness soak = new SoakHarness(new HeadlessDriver(model, HeadlessDriver.walkAndFire));
+
+        assertFalse(soak.run(18000));
+        assertTrue(soak.spriteSlope > soak.maxSpriteSlope);
+    }
+
+    @Test
+    public void slope_fitsStraightLine()
+    {
+        long[] xs = { 0, 1000000, 2000000, 3000000 };
+        double[] ys = { 5, 7, 9, 11 };
+
+        assertEquals(2e-6, SoakHarness.slope(xs, ys, 0, 4), 1e-12);
+        assertEquals(0, SoakHarness.slope(xs, ys, 3, 4), 0);
+    }
+}
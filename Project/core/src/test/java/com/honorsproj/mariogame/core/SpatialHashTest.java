@@ -0,0 +1,292 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the spatial hash broadphase against a brute-force scan of every sprite.
+ */
+public class SpatialHashTest
+{
+    // A long level with lots of everything, some of it at negative x
+    static Model crowdedModel(long seed, boolean useBroadphase)
+    {
+        Random random = new Random(seed);
+        Model model = new Model();
+        model.ground = 1000;
+        model.viewWidth = 1920;
+        model.useBroadphase = useBroadphase;
+
+        for (int i = 0; i < 60; i++)
+        {
+            model.addSprite(new Tube(model, random.nextInt(20000) - 2000, 600 + random.nextInt(300)));
+        }
+
+        for (int i = 0; i < 300; i++)
+        {
+            model.addSprite(new Goomba(model, random.nextInt(20000) - 2000, random.nextInt(900)));
+        }
+
+        for (int i = 0; i < 200; i++)
+        {
+            model.addSprite(new Fireball(model, random.nextInt(20000) - 2000,
+                    random.nextInt(900), random.nextBoolean()));
+        }
+
+        return model;
+    }
+
+    @Test
+    public void query_findsEverySpriteBruteForceFinds()
+    {
+        Model model = crowdedModel(1, true);
+        model.grid.rebuild(model.sprites);
+
+        ArrayList<Sprite> candidates = new ArrayList<Sprite>();
+
+        for (Sprite s : model.sprites)
+        {
+            candidates.clear();
+            model.grid.query(s.x, s.y, s.x + s.w, s.y + s.h, candidates);
+
+            // Each candidate comes back once
+            assertEquals(candidates.size(), new HashSet<Sprite>(candidates).size());
+
+            ArrayList<Sprite> expected = new ArrayList<Sprite>();
+            for (Sprite other : model.sprites)
+            {
+                if (s.collidesWith(other))
+                    expected.add(other);
+            }
+
+            ArrayList<Sprite> actual = new ArrayList<Sprite>();
+            for (Sprite other : candidates)
+            {
+                if (s.collidesWith(other))
+                    actual.add(other);
+            }
+
+            assertEquals(new HashSet<Sprite>(expected), new HashSet<Sprite>(actual));
+        }
+    }
+
+    @Test
+    public void update_keepsGridInStepWithMovingSprites()
+    {
+        Model model = crowdedModel(2, true);
+        model.grid.rebuild(model.sprites);
+        Random random = new Random(3);
+
+        // Move sprites around, across cell borders and into negative cells
+        for (int round = 0; round < 50; round++)
+        {
+            for (Sprite s : model.sprites)
+            {
+                s.x += random.nextInt(401) - 200;
+                s.y += random.nextInt(401) - 200;
+                model.grid.update(s);
+            }
+        }
+
+        ArrayList<Sprite> candidates = new ArrayList<Sprite>();
+
+        for (Sprite s : model.sprites)
+        {
+            for (Sprite other : model.sprites)
+            {
+                if (!s.collidesWith(other))
+                    continue;
+
+                candidates.clear();
+                model.grid.query(s.x, s.y, s.x + s.w, s.y + s.h, candidates);
+                assertTrue(candidates.contains(other));
+            }
+        }
+    }
+
+    @Test
+    public void update_matchesBruteForceSimulation()
+    {
+        Model fast = crowdedModel(4, true);
+        Model slow = crowdedModel(4, false);
+
+        for (int tick = 0; tick < 300; tick++)
+        {
+            // Keep Mario walking into tubes and firing
+            for (Model m : new Model[] { fast, slow })
+            {
+                m.mario.x += 18;
+                m.scrollVal += 18;
+                if (tick % 7 == 0)
+                    m.mario.fire();
+
+                m.update();
+            }
+
+            assertEquals("sprite count at tick " + tick, slow.sprites.size(), fast.sprites.size());
+            assertEquals("scroll at tick " + tick, slow.scrollVal, fast.scrollVal);
+
+            for (int i = 0; i < slow.sprites.size(); i++)
+            {
+                Sprite a = slow.sprites.get(i);
+                Sprite b = fast.sprites.get(i);
+
+                assertEquals(a.id, b.id);
+                assertEquals("x of sprite " + a.id + " at tick " + tick, a.x, b.x);
+                assertEquals("y of sprite " + a.id + " at tick " + tick, a.y, b.y);
+                assertEquals(a.flip, b.flip);
+                assertEquals(a.kill, b.kill);
+            }
+        }
+    }
+
+    @Test
+    public void spritesIn_matchesBruteForceInIdOrder()
+    {
+        Model model = crowdedModel(5, true);
+
+        // Despawning moves sprites around the list
+        for (int i = 0; i < model.sprites.size(); i += 3)
+        {
+            model.despawn(model.sprites.get(i));
+        }
+
+        ArrayList<Sprite> actual = new ArrayList<Sprite>();
+        model.spritesIn(0, 0, 5000, 1000, actual);
+
+        model.useBroadphase = false;
+        ArrayList<Sprite> expected = new ArrayList<Sprite>();
+        model.spritesIn(0, 0, 5000, 1000, expected);
+
+        assertFalse(actual.isEmpty());
+        assertEquals(expected, actual);
+
+        for (int i = 1; i < actual.size(); i++)
+        {
+            assertTrue(actual.get(i - 1).id < actual.get(i).id);
+        }
+    }
+
+    @Test
+    public void spritesIn_matchesBruteForceAfterBroadphaseIsTurnedBackOn()
+    {
+        Model model = crowdedModel(6, true);
+
+        // Without fireballs nothing is despawned, which would hide a stale
+        // grid by marking it out of step
+        for (int i = model.sprites.size() - 1; i >= 0; i--)
+        {
+            if (model.sprites.get(i).isFireball())
+                model.despawn(model.sprites.get(i));
+        }
+        model.update();
+
+        // Sprites move for a while with nothing keeping the grid up to date
+        model.useBroadphase = false;
+        for (int tick = 0; tick < 30; tick++)
+        {
+            model.update();
+        }
+        model.useBroadphase = true;
+
+        for (int tick = 0; tick < 2; tick++)
+        {
+            // Small boxes, so sprites that moved out of one are missed
+            for (int x = -3000; x < 20000; x += 200)
+            {
+                ArrayList<Sprite> actual = new ArrayList<Sprite>();
+                model.spritesIn(x, 0, x + 200, 1000, actual);
+
+                model.useBroadphase = false;
+                ArrayList<Sprite> expected = new ArrayList<Sprite>();
+                model.spritesIn(x, 0, x + 200, 1000, expected);
+                model.useBroadphase = true;
+
+                assertEquals("x " + x + " at tick " + tick, expected, actual);
+            }
+
+            // Then again once the grid has been rebuilt
+            model.update();
+        }
+    }
+
+    @Test
+    public void spritesIn_usesTheGridWithTheEntityStore()
+    {
+        Model model = crowdedModel(8, true);
+        model.useEntityStore(true);
+
+        for (int tick = 0; tick < 60; tick++)
+        {
+            model.mario.fire();
+            model.update();
+            assertTrue(model.gridReady());
+
+            for (int x = -3000; x < 20000; x += 500)
+            {
+                ArrayList<Sprite> actual = new ArrayList<Sprite>();
+                model.spritesIn(x, 0, x + 500, 1000, actual);
+
+                model.useBroadphase = false;
+                ArrayList<Sprite> expected = new ArrayList<Sprite>();
+                model.spritesIn(x, 0, x + 500, 1000, expected);
+                model.useBroadphase = true;
+
+                assertEquals("x " + x + " at tick " + tick, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void insert_keepsCellsSmallAsSpriteCountGrows()
+    {
+        Model model = new Model();
+
+        // 100k sprites at the benchmark's density of one per 40 pixels
+        Random random = new Random(6);
+        for (int i = 0; i < 100000; i++)
+        {
+            model.addSprite(new Goomba(model, random.nextInt(4000000), random.nextInt(900)));
+        }
+
+        int largest = 0;
+        for (SpatialHash.Cell c : model.grid.table)
+        {
+            if (c != null)
+                largest = Math.max(largest, c.size);
+        }
+
+        assertTrue("largest cell holds " + largest, largest < 20);
+        assertTrue(model.grid.used * 2 <= model.grid.table.length);
+    }
+
+    @Test
+    public void remove_releasesCellsSpritesHaveLeftForReuse()
+    {
+        Model model = new Model();
+        Goomba g = new Goomba(model, 0, 0);
+        model.addSprite(g);
+        SpatialHash.Cell first = g.cell;
+
+        // Walk one sprite a long way, through thousands of cells
+        for (int i = 0; i < 100000; i++)
+        {
+            g.x += 64;
+            model.grid.update(g);
+        }
+
+        assertTrue("table length " + model.grid.table.length, model.grid.table.length <= 64);
+
+        // Each cell left behind was the one taken for the next
+        assertSame(first, g.cell);
+
+        ArrayList<Sprite> found = new ArrayList<Sprite>();
+        model.grid.query(g.x, g.y, g.x, g.y, found);
+        assertTrue(found.contains(g));
+    }
+}
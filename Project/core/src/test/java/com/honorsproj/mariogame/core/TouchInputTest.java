@@ -0,0 +1,111 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drains queued touch events into Input buttons, one tick at a time.
+ */
+public class TouchInputTest
+{
+    final static int w = HeadlessDriver.screenWidth;
+    final static int h = HeadlessDriver.screenHeight;
+
+    // Middle of the bottom right (move right) and top right (jump) buttons
+    final static float rightX = 1850, rightY = 900;
+    final static float jumpX = 1850, jumpY = 100;
+
+    @Test
+    public void drain_holdsEveryFingerOnTheScreen()
+    {
+        TouchInput touches = new TouchInput(16);
+
+        touches.add(TouchInput.DOWN, 0, rightX, rightY, 10);
+        touches.add(TouchInput.DOWN, 1, jumpX, jumpY, 20);
+        assertEquals(Input.MOVE_RIGHT | Input.JUMP, touches.drain(100, w, h));
+
+        // Still held next tick with no new events
+        assertEquals(Input.MOVE_RIGHT | Input.JUMP, touches.drain(200, w, h));
+
+        touches.add(TouchInput.UP, 1, jumpX, jumpY, 250);
+        assertEquals(Input.MOVE_RIGHT, touches.drain(300, w, h));
+    }
+
+    @Test
+    public void drain_keepsTapsShorterThanATick()
+    {
+        TouchInput touches = new TouchInput(16);
+
+        touches.add(TouchInput.DOWN, 0, jumpX, jumpY, 110);
+        touches.add(TouchInput.UP, 0, jumpX, jumpY, 120);
+
+        assertEquals(Input.JUMP, touches.drain(150, w, h));
+        assertEquals(0, touches.drain(200, w, h));
+    }
+
+    @Test
+    public void drain_ignoresButtonsAFingerOnlySlidAcross()
+    {
+        TouchInput touches = new TouchInput(16);
+
+        // Slides up over jump and back down within one tick
+        touches.add(TouchInput.DOWN, 0, rightX, rightY, 10);
+        touches.add(TouchInput.MOVE, 0, jumpX, jumpY, 20);
+        touches.add(TouchInput.MOVE, 0, rightX, rightY, 30);
+
+        assertEquals(Input.MOVE_RIGHT, touches.drain(100, w, h));
+    }
+
+    @Test
+    public void drain_leavesLaterEventsForLaterTicks()
+    {
+        TouchInput touches = new TouchInput(16);
+
+        touches.add(TouchInput.DOWN, 0, rightX, rightY, 100);
+        touches.add(TouchInput.MOVE, 0, jumpX, jumpY, 300);
+
+        assertEquals(0, touches.drain(50, w, h));
+        assertEquals(Input.MOVE_RIGHT, touches.drain(150, w, h));
+        // The finger slid from move right to jump
+        assertEquals(Input.JUMP, touches.drain(300, w, h));
+    }
+
+    @Test
+    public void clear_liftsHeldFingersAndDropsQueuedEvents()
+    {
+        TouchInput touches = new TouchInput(16);
+
+        // Held when the game paused, then a tap while paused
+        touches.add(TouchInput.DOWN, 0, rightX, rightY, 10);
+        assertEquals(Input.MOVE_RIGHT, touches.drain(100, w, h));
+        touches.add(TouchInput.DOWN, 1, jumpX, jumpY, 150);
+
+        touches.clear();
+        assertEquals(0, touches.drain(200, w, h));
+    }
+
+    @Test
+    public void add_dropsEventsWhenFullAndReusesSlots()
+    {
+        TouchInput touches = new TouchInput(4);
+
+        for (int i = 0; i < 4; i++)
+        {
+            assertTrue(touches.add(TouchInput.MOVE, 0, rightX, rightY, i));
+        }
+        assertFalse(touches.add(TouchInput.UP, 0, rightX, rightY, 5));
+        assertEquals(1, touches.dropped);
+
+        assertEquals(Input.MOVE_RIGHT, touches.drain(10, w, h));
+
+        // Draining freed the slots, so the ring wraps around
+        for (int round = 0; round < 100; round++)
+        {
+            assertTrue(touches.add(TouchInput.UP, 0, rightX, rightY, 20 + round));
+            assertTrue(touches.add(TouchInput.DOWN, 0, jumpX, jumpY, 20 + round));
+            assertEquals(Input.JUMP, touches.drain(20 + round, w, h));
+        }
+        assertEquals(1, touches.dropped);
+    }
+}
@@ -0,0 +1,66 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks tube index lookups against a brute-force scan of every tube.
+ */
+public class TubeIndexTest
+{
+    @Test
+    public void first_findsEveryTubeBruteForceFinds()
+    {
+        Model model = SpatialHashTest.crowdedModel(3, true);
+        TubeIndex tubes = model.tubes();
+
+        int tubeCount = 0;
+        for (Sprite s : model.sprites)
+        {
+            if (s.isTube())
+                tubeCount++;
+        }
+        assertEquals(tubeCount, tubes.size);
+
+        for (int i = 1; i < tubes.size; i++)
+        {
+            assertTrue(tubes.x[i - 1] <= tubes.x[i]);
+        }
+
+        for (Sprite s : model.sprites)
+        {
+            int expected = 0;
+            for (Sprite t : model.sprites)
+            {
+                if (t.isTube() && s.collidesWith(t))
+                    expected++;
+            }
+
+            int found = 0;
+            for (int i = tubes.first(s.x); i < tubes.size && tubes.x[i] <= s.x + s.w; i++)
+            {
+                if (tubes.collides(i, s.x, s.y, s.w, s.h))
+                    found++;
+            }
+
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    public void tubes_isRebuiltWhenTubesChange()
+    {
+        Model model = new Model();
+        TubeIndex before = model.tubes();
+        assertSame(before, model.tubes());
+
+        model.addSprite(new Tube(model, 5000, 600));
+        assertEquals(before.size + 1, model.tubes().size);
+
+        SpriteSizes sizes = new SpriteSizes();
+        sizes.tubeW = 80;
+        model.setSpriteSizes(sizes);
+        assertEquals(80, model.tubes().maxWidth);
+    }
+}
@@ -0,0 +1,58 @@
+package com.honorsproj.mariogame.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+
+/**
+ * Splits jobs across a WorkerPool.
+ */
+public class WorkerPoolTest
+{
+    // Runs a job of the given batches and checks each ran exactly once
+    static void assertEveryBatchRunsOnce(WorkerPool pool, int batches)
+    {
+        final AtomicIntegerArray runs = new AtomicIntegerArray(batches);
+
+        pool.run(new WorkerPool.Job()
+        {
+            @Override
+            public void run(int batch)
+            {
+                runs.incrementAndGet(batch);
+            }
+        }, batches);
+
+        for (int i = 0; i < batches; i++)
+        {
+            assertEquals("batch " + i, 1, runs.get(i));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void run_finishesAfterAWorkerIsInterrupted() throws InterruptedException
+    {
+        WorkerPool pool = new WorkerPool(3);
+
+        try
+        {
+            assertEveryBatchRunsOnce(pool, 50);
+
+            // Interrupted while waiting for the next job
+            pool.threads[1].interrupt();
+            Thread.sleep(50);
+
+            for (int job = 0; job < 20; job++)
+            {
+                assertEveryBatchRunsOnce(pool, 50);
+            }
+            assertTrue(pool.threads[1].isAlive());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+}